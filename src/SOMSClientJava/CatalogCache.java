@@ -0,0 +1,123 @@
+package SOMSClientJava;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a local copy of the server's item catalog, refreshed with 'view items since
+ * &lt;version&gt;' so that only items changed since the last refresh are downloaded.
+ * Versions are only comparable within one server epoch; a response from another epoch means
+ * the server restarted, and the cache is dropped.
+ */
+public class CatalogCache {
+    private static final Logger logger = Logger.getLogger(CatalogCache.class.getName());
+    private static final String VERSION_PREFIX = "Catalog version: ";
+
+    // Item name as the server shows it to its latest row, in the order items were first seen
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+    private long version;
+    private long epoch;
+
+    /**
+     * Gets the catalog version the cache is up to date with.
+     *
+     * @return The version to send with the next 'view items since' request.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Applies a 'view items since' response to the cache.
+     *
+     * @param response The response text, without the '---END---' delimiter.
+     * @return False if the response could not be applied, or if it comes from another server
+     *         epoch or an older version (the server restarted); the cache is then cleared and
+     *         should be refreshed from version 0.
+     */
+    public boolean apply(String response) {
+        String[] lines = response.split("\\r?\\n");
+        if (lines.length == 0 || !lines[0].startsWith(VERSION_PREFIX)) {
+            logger.warning("Unexpected catalog response: " + response);
+            return false;
+        }
+        // "Catalog version: <version> (epoch <epoch>)"
+        String[] header = lines[0].substring(VERSION_PREFIX.length()).trim().split("\\s+");
+        long serverVersion = -1;
+        long serverEpoch = 0;
+        if (header.length == 3 && header[1].equals("(epoch") && header[2].endsWith(")")) {
+            try {
+                serverVersion = Long.parseLong(header[0]);
+                serverEpoch = Long.parseLong(header[2].substring(0, header[2].length() - 1));
+            } catch (NumberFormatException e) {
+                serverVersion = -1;
+            }
+        }
+        if (serverVersion < 0) {
+            logger.warning("Unexpected catalog version: " + lines[0]);
+            return false;
+        }
+        if (version != 0 && (serverEpoch != epoch || serverVersion < version)) {
+            rows.clear();
+            version = 0;
+            return false;
+        }
+
+        // Rows follow the dashed line under the column header
+        boolean inRows = false;
+        for (int i = 1; i < lines.length; i++) {
+            if (!inRows) {
+                inRows = lines[i].startsWith("---");
+                continue;
+            }
+            String[] fields = lines[i].trim().split("\\s+");
+            if (fields.length != 4) {
+                continue;
+            }
+            try {
+                Row row = new Row(fields[0], Double.parseDouble(fields[1].replace(',', '.')), Integer.parseInt(fields[2]));
+                rows.put(fields[0], row);
+            } catch (NumberFormatException e) {
+                logger.warning("Skipping malformed catalog row: " + lines[i]);
+            }
+        }
+        version = serverVersion;
+        epoch = serverEpoch;
+        return true;
+    }
+
+    /**
+     * Renders the cached catalog as the server's 'view items' table.
+     *
+     * @return The table.
+     */
+    public String render() {
+        if (rows.isEmpty()) {
+            return "No items are currently available.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Available Items:\n");
+        sb.append(String.format("%-20s %-10s %-10s\n", "Item Name", "Price($)", "Quantity"));
+        sb.append("-------------------------------------------------\n");
+        for (Row row : rows.values()) {
+            sb.append(String.format("%-20s %-10.2f %-10d\n", row.name, row.price, row.quantity));
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * One cached item.
+     */
+    private static class Row {
+        private final String name;
+        private final double price;
+        private final int quantity;
+
+        Row(String name, double price, int quantity) {
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -4,17 +4,27 @@ package SOMSClientJava;
 import java.io.*;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Handles the socket connection to the SOMS server.
+ * <p>
+ * A reader thread takes every line the server sends. Notification lines, which the server
+ * may push at any time, are printed as they arrive; all other lines are queued for
+ * {@link #readResponse()}.
  */
 public class Client implements Closeable {
     private static final Logger logger = Logger.getLogger(Client.class.getName());
+    private static final String NOTIFICATION_PREFIX = "@notify ";
+    // Queued in place of a line once the server closes the connection
+    private static final String END_OF_STREAM = new String("end of stream");
     private Socket socket;
     private PrintWriter out;
     private BufferedReader in;
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
 
     /**
      * Constructs a new Client and connects to the server.
@@ -31,7 +41,10 @@ public class Client implements Closeable {
             socket = new Socket(serverAddress, serverPort);
             out = new PrintWriter(socket.getOutputStream(), true);
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            logger.info("Connected to SOMS Server at " + serverAddress + ":" + serverPort);
+            logger.info(() -> "Connected to SOMS Server at " + serverAddress + ":" + serverPort);
+            Thread reader = new Thread(this::readLines, "server-reader");
+            reader.setDaemon(true);
+            reader.start();
         } catch (UnknownHostException e) {
             logger.log(Level.SEVERE, "Unknown host: " + serverAddress, e);
             throw e;
@@ -48,7 +61,7 @@ public class Client implements Closeable {
      */
     public void sendCommand(String command) {
         out.println(command);
-        logger.info("Sent command to server: " + command);
+        logger.info(() -> "Sent command to server: " + command);
     }
 
     /**
@@ -58,15 +71,45 @@ public class Client implements Closeable {
      * @throws IOException If an I/O error occurs.
      */
     public String readResponse() throws IOException {
-        String response = in.readLine();
-        if (response != null) {
-            logger.info("Received response from server: " + response);
-        } else {
+        String response;
+        try {
+            response = responses.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the server.");
+        }
+        if (response == END_OF_STREAM) {
+            // Leave the marker for any later reads
+            responses.add(END_OF_STREAM);
             logger.warning("Received null response from server.");
+            return null;
         }
+        logger.info(() -> "Received response from server: " + response);
         return response;
     }
 
+    /**
+     * Reads lines from the server until the connection closes, printing notifications and
+     * queueing everything else.
+     */
+    private void readLines() {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(NOTIFICATION_PREFIX)) {
+                    System.out.println();
+                    System.out.println("[Notification] " + line.substring(NOTIFICATION_PREFIX.length()));
+                } else {
+                    responses.add(line);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Connection to server closed.", e);
+        } finally {
+            responses.add(END_OF_STREAM);
+        }
+    }
+
     /**
      * Closes the client socket and associated streams.
      *
@@ -1,6 +1,10 @@
 package SOMSClientJava;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Scanner;
 import java.util.logging.*;
 
@@ -88,7 +92,7 @@ public class ClientProgram {
             }
 
             // Prompt for Commands
-            enterCommandLoop(client, scanner);
+            enterCommandLoop(client, scanner, isSeller ? null : new CatalogCache());
 
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Client error: ", e);
@@ -120,13 +124,30 @@ public class ClientProgram {
      *
      * @param client  The client instance to communicate with the server.
      * @param scanner The scanner to read user input.
+     * @param catalog The local catalog 'view items' is served from, or null to pass it through.
      * @throws IOException If an I/O error occurs.
      */
-    private static void enterCommandLoop(Client client, Scanner scanner) throws IOException {
+    private static void enterCommandLoop(Client client, Scanner scanner, CatalogCache catalog) throws IOException {
         while (true) {
             System.out.print("Enter a command: ");
             String command = scanner.nextLine();
-            client.sendCommand(command);
+            String[] tokens = command.trim().split("\\s+");
+            if (catalog != null && tokens.length == 2 && tokens[0].equalsIgnoreCase("view") && tokens[1].equalsIgnoreCase("items")) {
+                System.out.println(refreshCatalog(client, catalog));
+                continue;
+            }
+            if (tokens[0].equalsIgnoreCase("import") && tokens.length == 2 && !isFormat(tokens[1])) {
+                if (!uploadFile(client, tokens[1])) {
+                    continue;
+                }
+            } else if (tokens[0].equalsIgnoreCase("export") && tokens.length >= 3 && !isFormat(tokens[tokens.length - 1])) {
+                String path = tokens[tokens.length - 1];
+                client.sendCommand(command.trim().substring(0, command.trim().length() - path.length()).trim());
+                downloadToFile(client, path);
+                continue;
+            } else {
+                client.sendCommand(command);
+            }
             String response = readMultiLineResponse(client);
             if (response != null && !response.isEmpty()) {
                 System.out.println(response);
@@ -138,6 +159,96 @@ public class ClientProgram {
         }
     }
 
+    /**
+     * Brings the local catalog up to date with the items changed since its version, starting
+     * over from version 0 if the server's catalog turns out to be older than the cache.
+     *
+     * @param client  The client instance to communicate with the server.
+     * @param catalog The local catalog.
+     * @return The catalog table, or the server's message if the refresh failed.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static String refreshCatalog(Client client, CatalogCache catalog) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            client.sendCommand("view items since " + catalog.getVersion());
+            String response = readMultiLineResponse(client);
+            if (catalog.apply(response)) {
+                return catalog.render();
+            }
+            if (catalog.getVersion() != 0 || !response.startsWith("Catalog version: ")) {
+                return response;
+            }
+        }
+        return "The catalog could not be refreshed.";
+    }
+
+    /**
+     * Checks whether a command argument names a transfer format rather than a file.
+     *
+     * @param token The argument.
+     * @return True for "csv" or "jsonl".
+     */
+    private static boolean isFormat(String token) {
+        return token.equalsIgnoreCase("csv") || token.equalsIgnoreCase("jsonl");
+    }
+
+    /**
+     * Sends 'import' followed by the lines of a local file and the end-of-upload marker.
+     * Files ending in .jsonl or .json are sent as JSON lines, anything else as CSV.
+     *
+     * @param client The client instance to communicate with the server.
+     * @param path   The file to upload.
+     * @return True if the upload was sent and a response should be read.
+     */
+    private static boolean uploadFile(Client client, String path) {
+        String lower = path.toLowerCase();
+        String format = lower.endsWith(".jsonl") || lower.endsWith(".json") ? "jsonl" : "csv";
+        BufferedReader file;
+        try {
+            file = new BufferedReader(new FileReader(path));
+        } catch (IOException e) {
+            System.out.println("Could not read " + path + ": " + e.getMessage());
+            return false;
+        }
+
+        client.sendCommand("import " + format);
+        try (BufferedReader reader = file) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                client.sendCommand(line);
+            }
+        } catch (IOException e) {
+            // The server still needs the end marker; it reports on whatever arrived
+            System.out.println("Could not read all of " + path + ": " + e.getMessage());
+        }
+        client.sendCommand("---END---");
+        return true;
+    }
+
+    /**
+     * Writes the response to an 'export' command to a local file.
+     *
+     * @param client The client instance to communicate with the server.
+     * @param path   The file to write.
+     * @throws IOException If an I/O error occurs while reading from the server.
+     */
+    private static void downloadToFile(Client client, String path) throws IOException {
+        int lines = 0;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(path))) {
+            String line;
+            while ((line = client.readResponse()) != null && !line.equals("---END---")) {
+                writer.println(line);
+                lines++;
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write " + path + ": " + e.getMessage());
+            // Drain the rest of the export so the next command lines up with its response
+            readMultiLineResponse(client);
+            return;
+        }
+        System.out.println("Saved " + lines + " lines to " + path + ".");
+    }
+
     /**
      * Sets up the logger to log only severe messages to the console.
      */
@@ -6,6 +6,8 @@ package SOMSServerJava;
 public class Account {
     private int accountNumber;
     private double balance;
+    // Last settlement ledger batch included in the balance
+    private long settledBatch;
 
     /**
      * Default constructor required for JSON deserialization.
@@ -33,6 +35,10 @@ public class Account {
         return balance;
     }
 
+    public long getSettledBatch() {
+        return settledBatch;
+    }
+
     public void setAccountNumber(int accountNumber) {
         this.accountNumber = accountNumber;
     }
@@ -82,6 +88,20 @@ public class Account {
         balance += amount;
     }
 
+    /**
+     * Adds a settlement batch of credits to the account and records the batch number, so the
+     * saved account shows which batches its balance includes.
+     *
+     * @param batch  The number of the settlement batch.
+     * @param amount The amount credited by the batch.
+     */
+    public synchronized void settleBatch(long batch, double amount) {
+        if (amount > 0) {
+            balance += amount;
+        }
+        settledBatch = Math.max(settledBatch, batch);
+    }
+
     /**
      * Withdraws funds from the account.
      *
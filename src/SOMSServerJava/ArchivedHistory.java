@@ -0,0 +1,241 @@
+package SOMSServerJava;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * ArchivedHistory is a read-only, date-ordered view of one buyer's or seller's purchases when
+ * completed purchases live in a {@link PurchaseArchive}. It merges the archived rows, already
+ * kept in {@link Purchase#BY_DATE} order, with the live pending purchases, decoding archived
+ * records only as the view is iterated.
+ * <p>
+ * Range views only narrow the row range by binary search and the pending set by its own
+ * navigation, so a page or a date range costs O(log n + k) like the on-heap indexes. A purchase
+ * seen in both sources while it is being archived is returned once.
+ */
+final class ArchivedHistory extends AbstractSet<Purchase> implements NavigableSet<Purchase> {
+    private final PurchaseArchive archive;
+    // Date-ordered archive rows; this view covers rows[from] to rows[to - 1]
+    private final int[] rows;
+    private final int from;
+    private final int to;
+    private final NavigableSet<Purchase> pending;
+
+    /**
+     * Constructs a view over date-ordered archive rows and pending purchases.
+     *
+     * @param archive The archive holding the rows.
+     * @param rows    Row numbers in date order; not modified.
+     * @param count   The number of rows of the array in the view.
+     * @param pending The pending purchases, in date order.
+     */
+    ArchivedHistory(PurchaseArchive archive, int[] rows, int count, NavigableSet<Purchase> pending) {
+        this(archive, rows, 0, count, pending);
+    }
+
+    private ArchivedHistory(PurchaseArchive archive, int[] rows, int from, int to, NavigableSet<Purchase> pending) {
+        this.archive = archive;
+        this.rows = rows;
+        this.from = from;
+        this.to = to;
+        this.pending = pending;
+    }
+
+    @Override
+    public Comparator<? super Purchase> comparator() {
+        return Purchase.BY_DATE;
+    }
+
+    @Override
+    public int size() {
+        return (to - from) + pending.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to && pending.isEmpty();
+    }
+
+    @Override
+    public Iterator<Purchase> iterator() {
+        return new Merge(false);
+    }
+
+    @Override
+    public Iterator<Purchase> descendingIterator() {
+        return new Merge(true);
+    }
+
+    @Override
+    public NavigableSet<Purchase> tailSet(Purchase fromElement, boolean inclusive) {
+        return new ArchivedHistory(archive, rows, bound(fromElement, !inclusive), to,
+                pending.tailSet(fromElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<Purchase> headSet(Purchase toElement, boolean inclusive) {
+        return new ArchivedHistory(archive, rows, from, bound(toElement, inclusive),
+                pending.headSet(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<Purchase> subSet(Purchase fromElement, boolean fromInclusive,
+                                         Purchase toElement, boolean toInclusive) {
+        return tailSet(fromElement, fromInclusive).headSet(toElement, toInclusive);
+    }
+
+    @Override
+    public SortedSet<Purchase> subSet(Purchase fromElement, Purchase toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Purchase> headSet(Purchase toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Purchase> tailSet(Purchase fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Purchase first() {
+        return iterator().next();
+    }
+
+    @Override
+    public Purchase last() {
+        return descendingIterator().next();
+    }
+
+    @Override
+    public Purchase lower(Purchase e) {
+        return firstOrNull(headSet(e, false).descendingIterator());
+    }
+
+    @Override
+    public Purchase floor(Purchase e) {
+        return firstOrNull(headSet(e, true).descendingIterator());
+    }
+
+    @Override
+    public Purchase ceiling(Purchase e) {
+        return firstOrNull(tailSet(e, true).iterator());
+    }
+
+    @Override
+    public Purchase higher(Purchase e) {
+        return firstOrNull(tailSet(e, false).iterator());
+    }
+
+    @Override
+    public Purchase pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Purchase pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<Purchase> descendingSet() {
+        return Collections.unmodifiableNavigableSet(this).descendingSet();
+    }
+
+    private static Purchase firstOrNull(Iterator<Purchase> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Finds the first row of the view that sorts after the probe, or at or after it.
+     *
+     * @param probe      The purchase to position at.
+     * @param afterEqual True to skip a row equal to the probe.
+     * @return The row index, from {@code from} to {@code to}.
+     */
+    private int bound(Purchase probe, boolean afterEqual) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int order = Purchase.BY_DATE.compare(archive.read(rows[mid]), probe);
+            if (order < 0 || (order == 0 && afterEqual)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Walks the archived rows and the pending purchases together, in either direction.
+     */
+    private final class Merge implements Iterator<Purchase> {
+        private final boolean descending;
+        private final Iterator<Purchase> live;
+        private int next;
+        private Purchase archived;
+        private Purchase current;
+
+        Merge(boolean descending) {
+            this.descending = descending;
+            this.live = descending ? pending.descendingIterator() : pending.iterator();
+            this.next = descending ? to - 1 : from;
+            archived = readNext();
+            current = live.hasNext() ? live.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return archived != null || current != null;
+        }
+
+        @Override
+        public Purchase next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int order;
+            if (archived == null) {
+                order = 1;
+            } else if (current == null) {
+                order = -1;
+            } else {
+                order = Purchase.BY_DATE.compare(archived, current);
+                if (descending) {
+                    order = -order;
+                }
+            }
+            Purchase result;
+            if (order <= 0) {
+                result = archived;
+                archived = readNext();
+                if (order == 0) {
+                    // Being archived right now; the archived record is the current state
+                    current = live.hasNext() ? live.next() : null;
+                }
+            } else {
+                result = current;
+                current = live.hasNext() ? live.next() : null;
+            }
+            return result;
+        }
+
+        private Purchase readNext() {
+            if (descending ? next < from : next >= to) {
+                return null;
+            }
+            Purchase purchase = archive.read(rows[next]);
+            next += descending ? -1 : 1;
+            return purchase;
+        }
+    }
+}
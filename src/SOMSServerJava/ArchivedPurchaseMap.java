@@ -0,0 +1,238 @@
+package SOMSServerJava;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * ArchivedPurchaseMap holds one buyer's purchases, keyed by purchase ID, when purchases are
+ * stored in a {@link PurchaseArchive}. Pending purchases are kept as live objects; completed
+ * ones are only a purchase ID and archive row, and are decoded on every read.
+ * <p>
+ * Archived IDs are found through an open-addressing table of positions, and the rows are also
+ * kept in date order for the buyer's history. Reads of archived purchases return a new object
+ * each time. Completing or otherwise changing a purchase must go through the live object, which
+ * is only available while pending.
+ */
+public class ArchivedPurchaseMap extends AbstractMap<Integer, Purchase> {
+    private final PurchaseArchive archive;
+    private final IntHashMap<Purchase> live = new IntHashMap<>();
+    // Archived purchase IDs and their rows, guarded by this
+    private int[] ids = new int[4];
+    private int[] rows = new int[4];
+    private int archivedCount;
+    // Position in ids plus one for each archived ID, 0 for a free slot; guarded by this
+    private int[] slots = new int[8];
+    private final PurchaseArchive.DateOrderedRows history;
+
+    /**
+     * Constructs a new, empty ArchivedPurchaseMap.
+     *
+     * @param archive The archive that holds the buyer's completed purchases.
+     */
+    public ArchivedPurchaseMap(PurchaseArchive archive) {
+        this.archive = archive;
+        this.history = new PurchaseArchive.DateOrderedRows(archive);
+    }
+
+    @Override
+    public Purchase get(Object key) {
+        Purchase purchase = live.get(key);
+        if (purchase != null || !(key instanceof Integer)) {
+            return purchase;
+        }
+        int row = rowOf((Integer) key);
+        return row < 0 ? null : archive.read(row);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Purchase put(Integer purchaseId, Purchase purchase) {
+        return live.put(purchaseId, purchase);
+    }
+
+    @Override
+    public int size() {
+        synchronized (this) {
+            return live.size() + archivedCount;
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, Purchase>> entrySet() {
+        long[] archived;
+        List<Entry<Integer, Purchase>> pending;
+        synchronized (this) {
+            // ID in the high half so that sorting orders by ID; decoded only when iterated
+            archived = new long[archivedCount];
+            for (int i = 0; i < archivedCount; i++) {
+                archived[i] = (long) ids[i] << 32 | (rows[i] & 0xFFFFFFFFL);
+            }
+            pending = new ArrayList<>(live.entrySet());
+        }
+        // Ordered by purchase ID, as the saved file lists them
+        Arrays.sort(archived);
+        pending.sort(Map.Entry.comparingByKey());
+        return new Snapshot(archived, pending);
+    }
+
+    /**
+     * Returns the purchases that are still pending, without decoding the archived ones.
+     *
+     * @return A live view of the pending purchases.
+     */
+    Collection<Purchase> pendingPurchases() {
+        return live.values();
+    }
+
+    /**
+     * Gets the buyer's archived rows in date order.
+     *
+     * @return The date-ordered rows.
+     */
+    PurchaseArchive.DateOrderedRows getHistory() {
+        return history;
+    }
+
+    /**
+     * Records an archived purchase loaded from storage; {@link #sortArchived()} must be called
+     * once everything is loaded.
+     *
+     * @param purchaseId The key the purchase is stored under, normally its ID.
+     * @param row        The purchase's row in the archive.
+     */
+    synchronized void addArchived(int purchaseId, int row) {
+        index(purchaseId, row);
+        history.load(row);
+    }
+
+    /**
+     * Puts the archived purchases loaded from storage in date order.
+     */
+    void sortArchived() {
+        history.sort();
+    }
+
+    /**
+     * Replaces a live purchase by its archived record.
+     *
+     * @param purchase The live purchase that has just been archived.
+     * @param row      The purchase's row in the archive.
+     * @return True if this map held the purchase, false otherwise.
+     */
+    synchronized boolean archive(Purchase purchase, int row) {
+        Integer key = purchase.getPurchaseId();
+        if (live.get(key) != purchase) {
+            // Stored data may file a purchase under a key other than its purchaseId
+            key = null;
+            for (Entry<Integer, Purchase> entry : live.entrySet()) {
+                if (entry.getValue() == purchase) {
+                    key = entry.getKey();
+                    break;
+                }
+            }
+            if (key == null) {
+                return false;
+            }
+        }
+        index(key, row);
+        history.add(row);
+        live.remove(key);
+        return true;
+    }
+
+    private synchronized int rowOf(int purchaseId) {
+        int mask = slots.length - 1;
+        for (int slot = IntHashMap.indexFor(purchaseId, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int position = slots[slot] - 1;
+            if (ids[position] == purchaseId) {
+                return rows[position];
+            }
+        }
+        return -1;
+    }
+
+    private void index(int purchaseId, int row) {
+        if (archivedCount == ids.length) {
+            ids = Arrays.copyOf(ids, archivedCount * 2);
+            rows = Arrays.copyOf(rows, archivedCount * 2);
+        }
+        ids[archivedCount] = purchaseId;
+        rows[archivedCount] = row;
+        archivedCount++;
+        // Kept at most half full
+        if (archivedCount * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int position = 0; position < archivedCount; position++) {
+                place(position);
+            }
+        } else {
+            place(archivedCount - 1);
+        }
+    }
+
+    private void place(int position) {
+        int mask = slots.length - 1;
+        int slot = IntHashMap.indexFor(ids[position], mask);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = position + 1;
+    }
+
+    /**
+     * The entries of the map at one moment, in purchase ID order. Archived purchases are
+     * decoded as the iteration reaches them.
+     */
+    private final class Snapshot extends AbstractSet<Entry<Integer, Purchase>> {
+        private final long[] archived;
+        private final List<Entry<Integer, Purchase>> pending;
+
+        Snapshot(long[] archived, List<Entry<Integer, Purchase>> pending) {
+            this.archived = archived;
+            this.pending = pending;
+        }
+
+        @Override
+        public int size() {
+            return archived.length + pending.size();
+        }
+
+        @Override
+        public Iterator<Entry<Integer, Purchase>> iterator() {
+            return new Iterator<Entry<Integer, Purchase>>() {
+                private int nextArchived;
+                private int nextPending;
+
+                @Override
+                public boolean hasNext() {
+                    return nextArchived < archived.length || nextPending < pending.size();
+                }
+
+                @Override
+                public Entry<Integer, Purchase> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (nextPending == pending.size() || (nextArchived < archived.length
+                            && (int) (archived[nextArchived] >> 32) < pending.get(nextPending).getKey())) {
+                        long packed = archived[nextArchived++];
+                        return new SimpleImmutableEntry<>((int) (packed >> 32), archive.read((int) packed));
+                    }
+                    return pending.get(nextPending++);
+                }
+            };
+        }
+    }
+}
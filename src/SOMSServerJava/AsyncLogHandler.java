@@ -0,0 +1,248 @@
+package SOMSServerJava;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * AsyncLogHandler takes log file I/O off the threads that log. Publishing a record only puts
+ * it in a bounded ring buffer; a single writer thread drains the buffer in batches, formats
+ * the records, appends them to the log file with one flush per batch and hands them to any
+ * forwarding handlers (such as the console).
+ * <p>
+ * When the buffer is full the {@link OverflowPolicy} decides what happens: BLOCK makes the
+ * logging thread wait for room, DROP discards the record and a line counting the dropped
+ * records is written with the next batch.
+ * <p>
+ * The log file is rotated by size: when it would grow past the limit it is renamed to
+ * {@code <file>.1}, older files move up one number, and the oldest is deleted.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * What to do with a record when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP;
+
+        /**
+         * Parses a policy name.
+         *
+         * @param name "block" or "drop".
+         * @return The policy.
+         * @throws IllegalArgumentException if the name is not a known policy.
+         */
+        public static OverflowPolicy parse(String name) {
+            try {
+                return OverflowPolicy.valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown log overflow policy '" + name + "'. Use 'block' or 'drop'.");
+            }
+        }
+    }
+
+    private final BlockingQueue<LogRecord> buffer;
+    private final OverflowPolicy policy;
+    private final File file;
+    private final long maxBytes;
+    private final int fileCount;
+    private final List<Handler> forwards;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closing;
+    // Owned by the writer thread
+    private Writer writer;
+    private long bytesWritten;
+
+    /**
+     * Constructs a new AsyncLogHandler and starts its writer thread. The log file is appended to.
+     *
+     * @param fileName  The log file.
+     * @param maxBytes  The size past which the file is rotated; 0 disables rotation.
+     * @param fileCount The number of files to keep, including the current one.
+     * @param capacity  The number of records the buffer holds.
+     * @param policy    What to do with a record when the buffer is full.
+     * @param forwards  Handlers that also receive every record, on the writer thread.
+     * @throws IOException If the log file cannot be opened.
+     */
+    public AsyncLogHandler(String fileName, long maxBytes, int fileCount, int capacity,
+                           OverflowPolicy policy, Handler... forwards) throws IOException {
+        if (capacity <= 0 || fileCount <= 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Log capacity and file count must be positive and the size limit not negative.");
+        }
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.file = new File(fileName);
+        this.maxBytes = maxBytes;
+        this.fileCount = fileCount;
+        this.forwards = List.of(forwards);
+        setFormatter(new SimpleFormatter());
+        open();
+        writerThread = new Thread(this::drain, "async-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closing || !isLoggable(record)) {
+            return;
+        }
+        // The caller is inferred from the current stack on first use; on the writer thread
+        // it would name the writer instead of the class that logged
+        record.getSourceClassName();
+        if (policy == OverflowPolicy.DROP) {
+            if (!buffer.offer(record)) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        try {
+            buffer.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Does nothing; the writer thread flushes after every batch.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes out whatever is buffered, then stops the writer thread and closes the file and the
+     * forwarding handlers. Records published afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler forward : forwards) {
+            forward.close();
+        }
+    }
+
+    /**
+     * Gets the number of records discarded because the buffer was full.
+     *
+     * @return The number of dropped records since the handler was created.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long reportedDrops = 0;
+        try {
+            while (true) {
+                LogRecord first = buffer.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closing) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, BATCH_SIZE - 1);
+
+                long drops = dropped.get();
+                StringBuilder sb = new StringBuilder();
+                if (drops > reportedDrops) {
+                    sb.append("WARNING: ").append(drops - reportedDrops)
+                            .append(" log records were dropped because the log buffer was full.")
+                            .append(System.lineSeparator());
+                    reportedDrops = drops;
+                }
+                for (LogRecord record : batch) {
+                    sb.append(format(record));
+                    for (Handler forward : forwards) {
+                        forward.publish(record);
+                    }
+                }
+                write(sb.toString());
+                for (Handler forward : forwards) {
+                    forward.flush();
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Stopped without draining
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                reportError("Error closing " + file, e, ErrorManager.CLOSE_FAILURE);
+            }
+        }
+    }
+
+    private String format(LogRecord record) {
+        try {
+            return getFormatter().format(record);
+        } catch (RuntimeException e) {
+            reportError("Error formatting a log record", e, ErrorManager.FORMAT_FAILURE);
+            return "";
+        }
+    }
+
+    private void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (maxBytes > 0 && bytesWritten > 0 && bytesWritten + bytes.length > maxBytes) {
+                rotate();
+            }
+            writer.write(text);
+            writer.flush();
+            bytesWritten += bytes.length;
+        } catch (IOException e) {
+            reportError("Error writing to " + file, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void open() throws IOException {
+        bytesWritten = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        for (int i = fileCount - 1; i >= 1; i--) {
+            File older = new File(file.getPath() + "." + i);
+            File newer = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+            if (i == fileCount - 1 && older.exists() && !older.delete()) {
+                reportError("Could not delete " + older, null, ErrorManager.GENERIC_FAILURE);
+            }
+            if (newer.exists() && !newer.renameTo(older)) {
+                reportError("Could not rename " + newer + " to " + older, null, ErrorManager.GENERIC_FAILURE);
+            }
+        }
+        if (fileCount == 1 && file.exists() && !file.delete()) {
+            reportError("Could not delete " + file, null, ErrorManager.GENERIC_FAILURE);
+        }
+        open();
+    }
+}
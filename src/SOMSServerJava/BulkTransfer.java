@@ -0,0 +1,330 @@
+package SOMSServerJava;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BulkTransfer reads catalog uploads and formats catalog and purchase exports, one record per
+ * line, as CSV or JSON lines.
+ * <p>
+ * An upload is the lines a client sends after an 'import' command, up to a line reading
+ * {@code ---END---}. Item records have a name, a price and a quantity; a CSV upload may start
+ * with a {@code name,price,quantity} header. Records for the same item are merged: the last
+ * price applies and the quantities add up.
+ */
+public class BulkTransfer {
+    public static final String END_OF_UPLOAD = "---END---";
+    public static final int MAX_RECORDS = 100_000;
+    public static final int MAX_REPORTED_ERRORS = 20;
+    private static final Gson gson = new Gson();
+
+    /**
+     * The record formats supported for import and export.
+     */
+    public enum Format {
+        CSV,
+        JSONL;
+
+        /**
+         * Parses a format name.
+         *
+         * @param name "csv" or "jsonl".
+         * @return The format.
+         * @throws IllegalArgumentException if the name is not a known format.
+         */
+        public static Format parse(String name) {
+            try {
+                return Format.valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown format '" + name + "'. Use 'csv' or 'jsonl'.");
+            }
+        }
+    }
+
+    /**
+     * One validated item record of an upload.
+     */
+    public static final class ItemRecord {
+        private final String name;
+        private double price;
+        private int quantity;
+
+        private ItemRecord(String name, double price, int quantity) {
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+
+    /**
+     * The records of an upload together with the problems found in it.
+     */
+    public static final class Upload {
+        // Lowercase item name to its merged record, in upload order
+        private final Map<String, ItemRecord> records = new LinkedHashMap<>();
+        private final List<String> errors = new ArrayList<>();
+        private int errorCount;
+        private int lineCount;
+
+        public Map<String, ItemRecord> getRecords() {
+            return Collections.unmodifiableMap(records);
+        }
+
+        /**
+         * Gets the first problems found, at most {@link #MAX_REPORTED_ERRORS}.
+         *
+         * @return Messages prefixed with their line number.
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        private void error(int line, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + line + ": " + message);
+            }
+        }
+    }
+
+    /**
+     * Reads and validates an item upload. The whole upload is always consumed, so the
+     * connection stays in step with the client even when the upload is rejected.
+     *
+     * @param in     The reader positioned after the 'import' command.
+     * @param format The format of the records.
+     * @return The upload.
+     * @throws IOException If the connection fails.
+     */
+    public static Upload readItems(BufferedReader in, Format format) throws IOException {
+        Upload upload = new Upload();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(END_OF_UPLOAD)) {
+            int lineNumber = ++upload.lineCount;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (lineNumber == 1 && format == Format.CSV && trimmed.toLowerCase().startsWith("name,")) {
+                continue;
+            }
+            if (upload.records.size() >= MAX_RECORDS) {
+                upload.error(lineNumber, "An upload may hold at most " + MAX_RECORDS + " items.");
+                continue;
+            }
+            try {
+                ItemRecord record = format == Format.CSV ? parseCsvItem(trimmed) : parseJsonItem(trimmed);
+                upload.records.merge(record.name.toLowerCase(), record, (previous, next) -> {
+                    previous.price = next.price;
+                    previous.quantity = Math.addExact(previous.quantity, next.quantity);
+                    return previous;
+                });
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                upload.error(lineNumber, e.getMessage());
+            }
+        }
+        return upload;
+    }
+
+    private static ItemRecord parseCsvItem(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("Expected name,price,quantity.");
+        }
+        return validate(fields.get(0), fields.get(1), fields.get(2));
+    }
+
+    private static ItemRecord parseJsonItem(String line) {
+        JsonObject object;
+        try {
+            object = JsonParser.parseString(line).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IllegalArgumentException("Not a JSON object.");
+        }
+        return validate(jsonField(object, "name"), jsonField(object, "price"), jsonField(object, "quantity"));
+    }
+
+    private static String jsonField(JsonObject object, String name) {
+        JsonElement field = object.get(name);
+        // getAsString() throws for null, arrays and objects
+        if (field == null || !field.isJsonPrimitive()) {
+            throw new IllegalArgumentException("Expected name, price and quantity as strings or numbers.");
+        }
+        return field.getAsString();
+    }
+
+    private static ItemRecord validate(String name, String priceText, String quantityText) {
+        String trimmedName = name.trim();
+        if (trimmedName.isEmpty() || trimmedName.matches(".*\\s.*")) {
+            throw new IllegalArgumentException("Item names must be non-empty and contain no spaces.");
+        }
+        double price;
+        try {
+            price = Double.parseDouble(priceText.trim());
+        } catch (NumberFormatException e) {
+            price = -1;
+        }
+        if (!(price > 0) || Double.isInfinite(price)) {
+            throw new IllegalArgumentException("Invalid price for \"" + trimmedName + "\". Please enter a positive numeric value.");
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseInt(quantityText.trim());
+        } catch (NumberFormatException e) {
+            quantity = -1;
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Invalid quantity for \"" + trimmedName + "\". Please enter a positive integer value.");
+        }
+        return new ItemRecord(trimmedName, price, quantity);
+    }
+
+    /**
+     * Splits a CSV line into fields. Fields may be quoted; a doubled quote inside a quoted
+     * field is a literal quote.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Gets the header line for an item export.
+     *
+     * @param format The export format.
+     * @return The header, or null if the format has none.
+     */
+    public static String itemHeader(Format format) {
+        return format == Format.CSV ? "name,price,quantity,sellerID" : null;
+    }
+
+    /**
+     * Formats an item as one export line. The item's monitor is held while its fields are
+     * read, so price and quantity come from the same moment.
+     *
+     * @param item   The item.
+     * @param format The export format.
+     * @return The line.
+     */
+    public static String formatItem(Item item, Format format) {
+        String name;
+        double price;
+        int quantity;
+        String sellerID;
+        synchronized (item) {
+            name = item.getName();
+            price = item.getPrice();
+            quantity = item.getQuantityAvailable();
+            sellerID = item.getSellerID();
+        }
+        if (format == Format.CSV) {
+            return csv(name) + "," + price + "," + quantity + "," + csv(sellerID);
+        }
+        JsonObject object = new JsonObject();
+        object.addProperty("name", name);
+        object.addProperty("price", price);
+        object.addProperty("quantity", quantity);
+        object.addProperty("sellerID", sellerID);
+        return gson.toJson(object);
+    }
+
+    /**
+     * Gets the header line for a purchase export.
+     *
+     * @param format The export format.
+     * @return The header, or null if the format has none.
+     */
+    public static String purchaseHeader(Format format) {
+        return format == Format.CSV ? "purchaseId,itemName,quantity,purchaseDate,buyerID,sellerID,totalCost,status" : null;
+    }
+
+    /**
+     * Formats a purchase as one export line.
+     *
+     * @param purchase The purchase.
+     * @param format   The export format.
+     * @return The line.
+     */
+    public static String formatPurchase(Purchase purchase, Format format) {
+        String date = purchase.getPurchaseDate() == null ? "" : purchase.getPurchaseDate().toString();
+        if (format == Format.CSV) {
+            return purchase.getPurchaseId() + "," + csv(purchase.getItemName()) + "," + purchase.getQuantity() + ","
+                    + date + "," + csv(purchase.getUserID()) + "," + csv(purchase.getSellerID()) + ","
+                    + String.format("%.2f", purchase.getTotalCost()) + "," + csv(purchase.getStatus());
+        }
+        JsonObject object = new JsonObject();
+        object.addProperty("purchaseId", purchase.getPurchaseId());
+        object.addProperty("itemName", purchase.getItemName());
+        object.addProperty("quantity", purchase.getQuantity());
+        object.addProperty("purchaseDate", date);
+        object.addProperty("buyerID", purchase.getUserID());
+        object.addProperty("sellerID", purchase.getSellerID());
+        object.addProperty("totalCost", purchase.getTotalCost());
+        object.addProperty("status", purchase.getStatus());
+        return gson.toJson(object);
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,132 @@
+package SOMSServerJava;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Logger;
+
+/**
+ * BuyerIndex keeps each buyer's purchases in a concurrent skip list keyed by purchase date
+ * and ID, so history can be read in time order without sorting the buyer's purchases map.
+ * A date-range or most-recent query costs O(log n + k) for k results.
+ * <p>
+ * When purchases are archived off-heap, only pending purchases are held here and reads return
+ * a view merging them with the buyer's date-ordered rows in the {@link PurchaseArchive}.
+ */
+public class BuyerIndex implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(BuyerIndex.class.getName());
+    private final Map<String, NavigableSet<Purchase>> byBuyer = new ConcurrentHashMap<>();
+    private final PurchaseArchive archive;
+    // Loaded pending purchases filed under a buyer key other than their userID
+    private final Map<Purchase, String> misfiled = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new BuyerIndex and builds it from the loaded purchases.
+     *
+     * @param purchases Map of userID to their purchases.
+     */
+    public BuyerIndex(Map<String, Map<Integer, Purchase>> purchases) {
+        this(purchases, null);
+    }
+
+    /**
+     * Constructs a new BuyerIndex over purchases whose completed history may be archived.
+     *
+     * @param purchases Map of userID to their purchases.
+     * @param archive   The archive holding completed purchases, or null if they stay on the heap.
+     */
+    public BuyerIndex(Map<String, Map<Integer, Purchase>> purchases, PurchaseArchive archive) {
+        this.archive = archive;
+        if (archive != null) {
+            // Archived purchases are not held here, so only the pending ones need decoding
+            for (Map.Entry<String, Map<Integer, Purchase>> entry : purchases.entrySet()) {
+                NavigableSet<Purchase> pending = historyFor(entry.getKey());
+                for (Purchase purchase : ((ArchivedPurchaseMap) entry.getValue()).pendingPurchases()) {
+                    pending.add(purchase);
+                    if (!entry.getKey().equals(purchase.getUserID())) {
+                        misfiled.put(purchase, entry.getKey());
+                    }
+                }
+            }
+            logger.info("Buyer history is read from the purchase archive.");
+            return;
+        }
+        for (Map.Entry<String, Map<Integer, Purchase>> entry : purchases.entrySet()) {
+            NavigableSet<Purchase> history = historyFor(entry.getKey());
+            history.addAll(entry.getValue().values());
+        }
+        logger.info("Indexed purchase history for " + byBuyer.size() + " buyers.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        if (archive != null && purchase.getStatusCode() != Purchase.PENDING) {
+            return;
+        }
+        historyFor(purchase.getUserID()).add(purchase);
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        // The date and ID a purchase is ordered by never change; archived ones are read from the archive
+        if (archive != null) {
+            String buyerID = misfiled.remove(purchase);
+            NavigableSet<Purchase> pending = byBuyer.get(buyerID != null ? buyerID : purchase.getUserID());
+            if (pending != null) {
+                pending.remove(purchase);
+            }
+        }
+    }
+
+    /**
+     * Returns the buyer's purchases, oldest first.
+     *
+     * @param buyerID The ID of the buyer.
+     * @return A live, read-only view of the buyer's purchases; when archiving, archived
+     *         purchases completed after this call are not included.
+     */
+    public NavigableSet<Purchase> getPurchases(String buyerID) {
+        NavigableSet<Purchase> history = byBuyer.get(buyerID);
+        NavigableSet<Purchase> view = history == null
+                ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(history);
+        return archive == null ? view : archive.buyerHistory(buyerID, view);
+    }
+
+    /**
+     * Returns the buyer's purchases made at or after the given time, oldest first.
+     *
+     * @param buyerID The ID of the buyer.
+     * @param since   The earliest purchase date to include.
+     * @return A live, read-only view of the matching purchases.
+     */
+    public NavigableSet<Purchase> getPurchasesSince(String buyerID, LocalDateTime since) {
+        return getPurchases(buyerID).tailSet(Purchase.probeAt(since), true);
+    }
+
+    /**
+     * Returns the buyer's most recent purchases, oldest first.
+     *
+     * @param buyerID The ID of the buyer.
+     * @param count   The maximum number of purchases to return.
+     * @return Up to count of the buyer's latest purchases.
+     */
+    public List<Purchase> getLatestPurchases(String buyerID, int count) {
+        List<Purchase> latest = new ArrayList<>(Math.min(count, 64));
+        Iterator<Purchase> newestFirst = getPurchases(buyerID).descendingIterator();
+        while (newestFirst.hasNext() && latest.size() < count) {
+            latest.add(newestFirst.next());
+        }
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    private NavigableSet<Purchase> historyFor(String buyerID) {
+        return byBuyer.computeIfAbsent(buyerID, k -> new ConcurrentSkipListSet<>(Purchase.BY_DATE));
+    }
+}
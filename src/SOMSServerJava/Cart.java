@@ -0,0 +1,75 @@
+package SOMSServerJava;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cart describes a customer 'checkout' command: the items to buy and how many of each.
+ * <p>
+ * Syntax: {@code checkout <itemName>:<quantity> [<itemName>:<quantity> ...]}. Lines for the
+ * same item are merged. Lines are kept in item-name order, which is also the order their
+ * items are locked in during checkout.
+ */
+public class Cart {
+    public static final String USAGE = "Usage: checkout [itemName:quantity] [itemName:quantity] ...";
+    public static final int MAX_LINES = 50;
+
+    // Lowercase item name to quantity
+    private final Map<String, Integer> lines = new TreeMap<>();
+
+    /**
+     * Parses the arguments of a 'checkout' command.
+     *
+     * @param args The text after the 'checkout' keyword.
+     * @return The parsed cart.
+     * @throws IllegalArgumentException if the arguments are malformed or the cart is empty.
+     */
+    public static Cart parse(String args) {
+        Cart cart = new Cart();
+        String trimmed = args == null ? "" : args.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("The cart is empty. " + USAGE);
+        }
+
+        for (String token : trimmed.split("\\s+")) {
+            int separator = token.lastIndexOf(':');
+            if (separator <= 0 || separator == token.length() - 1) {
+                throw new IllegalArgumentException("Invalid cart line '" + token + "'. " + USAGE);
+            }
+            int quantity;
+            try {
+                quantity = Integer.parseInt(token.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid quantity in '" + token + "'. Please enter a numeric value.");
+            }
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than zero in '" + token + "'.");
+            }
+            cart.lines.merge(token.substring(0, separator).toLowerCase(), quantity, (a, b) -> {
+                long sum = (long) a + b;
+                if (sum > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Quantity too large for '" + token + "'.");
+                }
+                return (int) sum;
+            });
+        }
+        if (cart.lines.size() > MAX_LINES) {
+            throw new IllegalArgumentException("A cart may hold at most " + MAX_LINES + " different items.");
+        }
+        return cart;
+    }
+
+    /**
+     * Gets the cart lines.
+     *
+     * @return Lowercase item name to quantity, in item-name order.
+     */
+    public Map<String, Integer> getLines() {
+        return Collections.unmodifiableMap(lines);
+    }
+
+    public int size() {
+        return lines.size();
+    }
+}
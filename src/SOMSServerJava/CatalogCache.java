@@ -0,0 +1,168 @@
+package SOMSServerJava;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * CatalogCache keeps the 'view items' table pre-rendered and pre-encoded as bytes.
+ * <p>
+ * Every catalog change bumps a version number. A read whose snapshot still carries the
+ * current version is a cache hit; otherwise the table is rendered once and shared by all
+ * sessions until the next change. A render that races with a change is tagged with the
+ * version read before rendering, so it is simply rebuilt on the next read.
+ * <p>
+ * Each change also stamps the item with its new version and files it in a version-ordered
+ * map, so the items changed since a version a client already has are found without a scan.
+ * Versions restart when the server does, so they are reported with an epoch, the time this
+ * cache was created, that tells a client its cached versions no longer apply.
+ */
+public class CatalogCache implements CatalogListener {
+    private static final Logger logger = Logger.getLogger(CatalogCache.class.getName());
+    private static final String END = "---END---";
+
+    private final Map<String, Item> items;
+    private final AtomicLong version = new AtomicLong();
+    private final long epoch = System.currentTimeMillis();
+    // Version to the item it was stamped on; each item appears once, at its latest version
+    private final NavigableMap<Long, Item> byVersion = new ConcurrentSkipListMap<>();
+    // Serializes stamping; separate from the render lock so changes never wait on a render
+    private final Object stampLock = new Object();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Constructs a new CatalogCache.
+     *
+     * @param items Map of itemName to Item objects.
+     */
+    public CatalogCache(Map<String, Item> items) {
+        this.items = items;
+        for (Item item : items.values()) {
+            itemChanged(item);
+        }
+    }
+
+    @Override
+    public void itemChanged(Item item) {
+        synchronized (stampLock) {
+            // File the item under its new version before dropping the old entry and before
+            // publishing the version, so a reader that has seen a version also sees its item
+            long stamped = version.get() + 1;
+            long previous = item.getVersion();
+            byVersion.put(stamped, item);
+            if (previous != 0) {
+                byVersion.remove(previous, item);
+            }
+            item.setVersion(stamped);
+            version.set(stamped);
+        }
+    }
+
+    /**
+     * Gets the items changed after a version.
+     *
+     * @param since The version the caller already has; 0 for every item.
+     * @return A live view of the changed items, oldest change first. It may include changes
+     *         made after the caller read {@link #getVersion()}, never miss one made before.
+     */
+    public Collection<Item> getChangedSince(long since) {
+        return byVersion.tailMap(since, false).values();
+    }
+
+    /**
+     * Returns the encoded catalog table, including the trailing '---END---' delimiter.
+     * The array is shared between sessions and must not be modified.
+     *
+     * @return The encoded catalog response.
+     */
+    public byte[] getRenderedCatalog() {
+        Snapshot current = snapshot;
+        if (current != null && current.version == version.get()) {
+            hits.increment();
+            return current.bytes;
+        }
+        return rebuild();
+    }
+
+    /**
+     * Drops the rendered catalog, so the next request renders it again. Item versions are kept.
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getRebuildCount() {
+        return rebuilds.sum();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Gets the epoch the versions count from.
+     *
+     * @return The time the cache was created, in milliseconds since 1970.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    private synchronized byte[] rebuild() {
+        long renderedVersion = version.get();
+        Snapshot current = snapshot;
+        if (current != null && current.version == renderedVersion) {
+            // Another session rebuilt it while this one waited
+            hits.increment();
+            return current.bytes;
+        }
+
+        byte[] bytes = render().getBytes(Charset.defaultCharset());
+        snapshot = new Snapshot(renderedVersion, bytes);
+        rebuilds.increment();
+        logger.fine("Rebuilt catalog snapshot at version " + renderedVersion + " (" + bytes.length + " bytes).");
+        return bytes;
+    }
+
+    private String render() {
+        String newline = System.lineSeparator();
+        if (items.isEmpty()) {
+            return "No items are currently available." + newline + END + newline;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Available Items:\n");
+        sb.append(String.format("%-20s %-10s %-10s\n", "Item Name", "Price($)", "Quantity"));
+        sb.append("-------------------------------------------------\n");
+        for (Item item : items.values()) {
+            sb.append(String.format("%-20s %-10.2f %-10d\n",
+                    item.getName(), item.getPrice(), item.getQuantityAvailable()));
+        }
+        sb.append(newline).append(END).append(newline);
+        return sb.toString();
+    }
+
+    /**
+     * An immutable rendering of the catalog at one version.
+     */
+    private static class Snapshot {
+        private final long version;
+        private final byte[] bytes;
+
+        Snapshot(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package SOMSServerJava;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CatalogEvents forwards each catalog change to every registered CatalogListener.
+ */
+public class CatalogEvents implements CatalogListener {
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener for all subsequent catalog changes.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void itemChanged(Item item) {
+        for (CatalogListener listener : listeners) {
+            listener.itemChanged(item);
+        }
+    }
+}
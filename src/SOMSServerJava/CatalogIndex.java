@@ -0,0 +1,196 @@
+package SOMSServerJava;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * CatalogIndex keeps the items searchable without scanning the whole items map: a sorted name
+ * index, a price-ordered navigable index and a seller to items map.
+ * <p>
+ * Prices and stock change while an item is indexed, so each index holds an immutable Entry
+ * snapshot. When an item changes its old entry is swapped for a new one under the per-item
+ * lock of the entries map, keeping the sorted sets consistent.
+ */
+public class CatalogIndex implements CatalogListener {
+    private static final Logger logger = Logger.getLogger(CatalogIndex.class.getName());
+    private static final String MAX_KEY = "\uffff";
+
+    private static final Comparator<Entry> BY_NAME = Comparator
+            .comparing(Entry::getKey)
+            .thenComparing(Entry::getName)
+            .thenComparing(Entry::getSellerID);
+    private static final Comparator<Entry> BY_PRICE = Comparator
+            .comparingDouble(Entry::getPrice)
+            .thenComparing(BY_NAME);
+    private static final Comparator<Entry> BY_STOCK = Comparator
+            .comparingInt(Entry::getQuantityAvailable)
+            .thenComparing(BY_NAME);
+
+    private final Map<Item, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> byName = new ConcurrentSkipListSet<>(BY_NAME);
+    private final NavigableSet<Entry> byPrice = new ConcurrentSkipListSet<>(BY_PRICE);
+    private final Map<String, NavigableSet<Entry>> bySeller = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new CatalogIndex and builds it from the loaded items.
+     *
+     * @param items Map of itemName to Item objects.
+     */
+    public CatalogIndex(Map<String, Item> items) {
+        for (Item item : items.values()) {
+            itemChanged(item);
+        }
+        logger.info("Indexed " + entries.size() + " items for search.");
+    }
+
+    @Override
+    public void itemChanged(Item item) {
+        entries.compute(item, (key, previous) -> {
+            Entry current = new Entry(item);
+            if (previous != null) {
+                byName.remove(previous);
+                byPrice.remove(previous);
+                sellerEntries(previous.sellerID).remove(previous);
+            }
+            byName.add(current);
+            byPrice.add(current);
+            sellerEntries(current.sellerID).add(current);
+            return current;
+        });
+    }
+
+    /**
+     * Runs a catalog search. Results are drawn from the most selective index: the seller's items,
+     * then the name-prefix range, then the price range, and only then the whole name index.
+     * One extra result beyond the limit is returned when more results exist.
+     *
+     * @param query The search to run.
+     * @return Up to limit + 1 matching entries, in the requested order.
+     */
+    public List<Entry> search(CatalogQuery query) {
+        NavigableSet<Entry> source;
+        Comparator<Entry> sourceOrder;
+        if (query.getSellerID() != null) {
+            source = bySeller.getOrDefault(query.getSellerID(), Collections.emptyNavigableSet());
+            sourceOrder = BY_NAME;
+        } else if (query.getNamePrefix() != null) {
+            source = byName.subSet(probe(query.getNamePrefix(), 0), true,
+                    probe(query.getNamePrefix() + MAX_KEY, 0), false);
+            sourceOrder = BY_NAME;
+        } else if (query.hasPriceRange()) {
+            source = byPrice.subSet(probe("", query.getMinPrice()), true,
+                    probe(MAX_KEY, query.getMaxPrice()), true);
+            sourceOrder = BY_PRICE;
+        } else if (query.getSort() == CatalogQuery.Sort.PRICE) {
+            source = byPrice;
+            sourceOrder = BY_PRICE;
+        } else {
+            source = byName;
+            sourceOrder = BY_NAME;
+        }
+
+        Comparator<Entry> requested = comparatorFor(query.getSort());
+        Stream<Entry> results;
+        if (requested == sourceOrder) {
+            // The index already yields the requested order, so stop after the window
+            results = (query.isDescending() ? source.descendingSet() : source).stream()
+                    .filter(entry -> matches(entry, query));
+        } else {
+            Comparator<Entry> order = query.isDescending() ? requested.reversed() : requested;
+            results = source.stream()
+                    .filter(entry -> matches(entry, query))
+                    .sorted(order);
+        }
+        return results.skip(query.getOffset())
+                .limit(query.getLimit() + 1L)
+                .collect(Collectors.toList());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static boolean matches(Entry entry, CatalogQuery query) {
+        if (query.getNamePrefix() != null && !entry.key.startsWith(query.getNamePrefix())) {
+            return false;
+        }
+        if (query.getNameContains() != null && !entry.key.contains(query.getNameContains())) {
+            return false;
+        }
+        if (entry.price < query.getMinPrice() || entry.price > query.getMaxPrice()) {
+            return false;
+        }
+        return query.getSellerID() == null || query.getSellerID().equals(entry.sellerID);
+    }
+
+    private static Comparator<Entry> comparatorFor(CatalogQuery.Sort sort) {
+        switch (sort) {
+            case PRICE:
+                return BY_PRICE;
+            case STOCK:
+                return BY_STOCK;
+            default:
+                return BY_NAME;
+        }
+    }
+
+    private NavigableSet<Entry> sellerEntries(String sellerID) {
+        return bySeller.computeIfAbsent(sellerID, k -> new ConcurrentSkipListSet<>(BY_NAME));
+    }
+
+    private static Entry probe(String key, double price) {
+        return new Entry(key, "", price, 0, "");
+    }
+
+    /**
+     * An immutable snapshot of an item as it was last indexed.
+     */
+    public static class Entry {
+        private final String key;
+        private final String name;
+        private final double price;
+        private final int quantityAvailable;
+        private final String sellerID;
+
+        Entry(Item item) {
+            this(item.getName().toLowerCase(), item.getName(), item.getPrice(), item.getQuantityAvailable(),
+                    item.getSellerID() == null ? "" : item.getSellerID().toLowerCase());
+        }
+
+        Entry(String key, String name, double price, int quantityAvailable, String sellerID) {
+            this.key = key;
+            this.name = name;
+            this.price = price;
+            this.quantityAvailable = quantityAvailable;
+            this.sellerID = sellerID;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public int getQuantityAvailable() {
+            return quantityAvailable;
+        }
+
+        public String getSellerID() {
+            return sellerID;
+        }
+    }
+}
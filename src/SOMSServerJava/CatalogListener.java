@@ -0,0 +1,16 @@
+package SOMSServerJava;
+
+/**
+ * CatalogListener is notified whenever an item in the catalog is added or its price
+ * or stock changes, so that catalog caches and indexes stay in step with the items map.
+ * Callbacks run on the thread that applied the change and must be cheap.
+ */
+public interface CatalogListener {
+
+    /**
+     * Called after an item has been added or modified.
+     *
+     * @param item The item that changed.
+     */
+    void itemChanged(Item item);
+}
@@ -0,0 +1,167 @@
+package SOMSServerJava;
+
+/**
+ * CatalogQuery describes a customer 'search' command: optional name, price and seller
+ * filters, a sort order and a limit/offset window.
+ * <p>
+ * Syntax: {@code search [name <prefix>] [contains <text>] [price <min>-<max>] [seller <sellerID>]
+ * [sort name|price|stock] [desc] [limit <n>] [offset <n>]}
+ */
+public class CatalogQuery {
+    public static final String USAGE = "Usage: search [name <prefix>] [contains <text>] [price <min>-<max>] "
+            + "[seller <sellerID>] [sort name|price|stock] [desc] [limit <n>] [offset <n>]";
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    /**
+     * The orderings a search can return.
+     */
+    public enum Sort {
+        NAME,
+        PRICE,
+        STOCK
+    }
+
+    private String namePrefix;
+    private String nameContains;
+    private double minPrice = 0;
+    private double maxPrice = Double.MAX_VALUE;
+    private String sellerID;
+    private Sort sort = Sort.NAME;
+    private boolean descending;
+    private int limit = DEFAULT_LIMIT;
+    private int offset;
+
+    /**
+     * Parses the arguments of a 'search' command.
+     *
+     * @param args The text after the 'search' keyword; may be empty.
+     * @return The parsed query.
+     * @throws IllegalArgumentException if the arguments are malformed.
+     */
+    public static CatalogQuery parse(String args) {
+        CatalogQuery query = new CatalogQuery();
+        String trimmed = args == null ? "" : args.trim();
+        if (trimmed.isEmpty()) {
+            return query;
+        }
+
+        String[] tokens = trimmed.split("\\s+");
+        for (int i = 0; i < tokens.length; i++) {
+            String option = tokens[i].toLowerCase();
+            if (option.equals("desc")) {
+                query.descending = true;
+                continue;
+            }
+            if (i + 1 >= tokens.length) {
+                throw new IllegalArgumentException("Missing value for '" + option + "'. " + USAGE);
+            }
+            String value = tokens[++i];
+            switch (option) {
+                case "name":
+                    query.namePrefix = value.toLowerCase();
+                    break;
+                case "contains":
+                    query.nameContains = value.toLowerCase();
+                    break;
+                case "price":
+                    query.parsePriceRange(value);
+                    break;
+                case "seller":
+                    query.sellerID = value.toLowerCase();
+                    break;
+                case "sort":
+                    try {
+                        query.sort = Sort.valueOf(value.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Invalid sort. Use 'name', 'price' or 'stock'.");
+                    }
+                    break;
+                case "limit":
+                    query.limit = parseCount(value, "limit");
+                    if (query.limit == 0 || query.limit > MAX_LIMIT) {
+                        throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ".");
+                    }
+                    break;
+                case "offset":
+                    query.offset = parseCount(value, "offset");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown search option '" + option + "'. " + USAGE);
+            }
+        }
+        return query;
+    }
+
+    private void parsePriceRange(String value) {
+        String[] bounds = value.split("-", -1);
+        if (bounds.length != 2) {
+            throw new IllegalArgumentException("Invalid price range. Use <min>-<max>, e.g. 10-50 or 10-.");
+        }
+        try {
+            if (!bounds[0].isEmpty()) {
+                minPrice = Double.parseDouble(bounds[0]);
+            }
+            if (!bounds[1].isEmpty()) {
+                maxPrice = Double.parseDouble(bounds[1]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid price range. Please enter numeric bounds.");
+        }
+        if (minPrice < 0 || minPrice > maxPrice) {
+            throw new IllegalArgumentException("Invalid price range. Minimum must be between 0 and the maximum.");
+        }
+    }
+
+    private static int parseCount(String value, String option) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count < 0) {
+                throw new NumberFormatException();
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + option + ". Please enter a non-negative integer.");
+        }
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public String getNameContains() {
+        return nameContains;
+    }
+
+    public double getMinPrice() {
+        return minPrice;
+    }
+
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean hasPriceRange() {
+        return minPrice > 0 || maxPrice < Double.MAX_VALUE;
+    }
+
+    public String getSellerID() {
+        return sellerID;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+}
@@ -2,12 +2,13 @@ package SOMSServerJava;
 
 import java.io.*;
 import java.net.Socket;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * Handles client connections and processes commands based on user roles.
@@ -16,26 +17,59 @@ public class ClientHandler implements Runnable {
     private static final Logger logger = Logger.getLogger(ClientHandler.class.getName());
     private final Socket clientSocket;
     private final Map<String, User> users;
-    private final Map<Integer, Account> accounts;
+    private final IntHashMap<Account> accounts;
     private final Map<String, Item> items;
     private final Map<String, Map<Integer, Purchase>> purchases;
+    private final OrderEngine engine;
+    private final PurchaseIdAllocator purchaseIdAllocator;
+    private final PurchaseArchive purchaseArchive;
+    private final PurchaseEvents purchaseEvents;
+    private final SellerIndex sellerIndex;
+    private final SellerStatsCache sellerStatsCache;
+    private final BuyerIndex buyerIndex;
+    private final SellerLeaderboard sellerLeaderboard;
+    private final PurchaseAggregates purchaseAggregates;
+    private final SalesRollups salesRollups;
+    private final Reservations reservations;
+    private final SettlementLedger settlementLedger;
+    private final NotificationHub notificationHub;
+    // This session's notification subscription, or null while notifications are off
+    private NotificationHub.Subscription subscription;
+    private final CatalogEvents catalogEvents;
+    private final CatalogCache catalogCache;
+    private final CatalogIndex catalogIndex;
+    private final Metrics metrics = Metrics.get();
+    private final AtomicInteger activeSessions;
 
     /**
      * Constructs a new ClientHandler.
      *
-     * @param socket    The client socket.
-     * @param users     Map of userID to User objects.
-     * @param accounts  Map of accountNumber to Account objects.
-     * @param items     Map of itemName to Item objects.
-     * @param purchases Map of userID to their purchases.
+     * @param socket  The client socket.
+     * @param context The shared server state.
      */
-    public ClientHandler(Socket socket, Map<String, User> users, Map<Integer, Account> accounts,
-                         Map<String, Item> items, Map<String, Map<Integer, Purchase>> purchases) {
+    public ClientHandler(Socket socket, SOMSContext context) {
         this.clientSocket = socket;
-        this.users = users;
-        this.accounts = accounts;
-        this.items = items;
-        this.purchases = purchases;
+        this.users = context.getUsers();
+        this.accounts = context.getAccounts();
+        this.items = context.getItems();
+        this.purchases = context.getPurchases();
+        this.engine = context.getEngine();
+        this.purchaseIdAllocator = context.getPurchaseIdAllocator();
+        this.purchaseArchive = context.getPurchaseArchive();
+        this.purchaseEvents = context.getPurchaseEvents();
+        this.sellerIndex = context.getSellerIndex();
+        this.sellerStatsCache = context.getSellerStatsCache();
+        this.buyerIndex = context.getBuyerIndex();
+        this.sellerLeaderboard = context.getSellerLeaderboard();
+        this.purchaseAggregates = context.getPurchaseAggregates();
+        this.salesRollups = context.getSalesRollups();
+        this.reservations = context.getReservations();
+        this.settlementLedger = context.getSettlementLedger();
+        this.notificationHub = context.getNotificationHub();
+        this.catalogEvents = context.getCatalogEvents();
+        this.catalogCache = context.getCatalogCache();
+        this.catalogIndex = context.getCatalogIndex();
+        this.activeSessions = context.getActiveSessions();
     }
 
     /**
@@ -43,11 +77,12 @@ public class ClientHandler implements Runnable {
      */
     @Override
     public void run() {
+        activeSessions.incrementAndGet();
         try (
                 PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
                 BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
         ) {
-            logger.info("Client connected: " + clientSocket.getRemoteSocketAddress());
+            logger.info(() -> "Client connected: " + clientSocket.getRemoteSocketAddress());
 
             // Send Welcome Message
             out.println("Welcome to SOMS Server!");
@@ -59,7 +94,7 @@ public class ClientHandler implements Runnable {
 
             // Read UserID
             String userID = in.readLine();
-            logger.info("Received userID: " + userID + " from " + clientSocket.getRemoteSocketAddress());
+            logger.info(() -> "Received userID: " + userID + " from " + clientSocket.getRemoteSocketAddress());
 
             if (userID == null || userID.trim().isEmpty()) {
                 out.println("UserID cannot be empty.");
@@ -74,7 +109,7 @@ public class ClientHandler implements Runnable {
 
             // Read Password
             String password = in.readLine();
-            logger.info("Received password from userID: " + userID + " from " + clientSocket.getRemoteSocketAddress());
+            logger.info(() -> "Received password from userID: " + userID + " from " + clientSocket.getRemoteSocketAddress());
 
             if (password == null || password.trim().isEmpty()) {
                 out.println("Password cannot be empty.");
@@ -93,10 +128,12 @@ public class ClientHandler implements Runnable {
                 if (user.getRole().equalsIgnoreCase("customer")) {
                     out.println("You are logged in as a Customer.");
                     out.println("---END---");
+                    subscription = notificationHub.subscribe(user.getUserID(), out);
                     handleCustomer(out, in, user);
                 } else if (user.getRole().equalsIgnoreCase("seller")) {
                     out.println("You are logged in as a Seller.");
                     out.println("---END---");
+                    subscription = notificationHub.subscribe(user.getUserID(), out);
                     handleSeller(out, in, user);
                 } else {
                     out.println("Unknown role. Connection terminated.");
@@ -112,9 +149,11 @@ public class ClientHandler implements Runnable {
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Client handler error: ", e);
         } finally {
+            activeSessions.decrementAndGet();
+            notificationHub.unsubscribe(subscription);
             try {
                 clientSocket.close();
-                logger.info("Client disconnected: " + clientSocket.getRemoteSocketAddress());
+                logger.info(() -> "Client disconnected: " + clientSocket.getRemoteSocketAddress());
             } catch (IOException e) {
                 logger.log(Level.SEVERE, "Error closing client socket: ", e);
             }
@@ -132,7 +171,7 @@ public class ClientHandler implements Runnable {
         if (users.containsKey(userID)) {
             User user = users.get(userID);
             boolean isAuthenticated = user.getPassword().equals(password);
-            logger.info("Authentication attempt for userID: " + userID + " - " + (isAuthenticated ? "SUCCESS" : "FAILURE"));
+            logger.info(() -> "Authentication attempt for userID: " + userID + " - " + (isAuthenticated ? "SUCCESS" : "FAILURE"));
             return isAuthenticated;
         }
         logger.warning("UserID: " + userID + " not found.");
@@ -150,18 +189,25 @@ public class ClientHandler implements Runnable {
     private void handleCustomer(PrintWriter out, BufferedReader in, User user) throws IOException {
 
         // Display Top 5 Sellers
-        displayTopSellers(out);
+        displayTopSellers(out, SellerLeaderboard.Ranking.FULFILLED);
 
         displayAvailableItems(out);
 
         // Send Customer Command Panel
         out.println("Available Commands for Customers:");
         out.println("1. view credits - View your account balance.");
-        out.println("2. view items - Display available items for purchase.");
+        out.println("2. view items [since <version>] - Display available items, or only those changed after a catalog version.");
         out.println("3. buy [itemName] [quantity] - Purchase a specified quantity of an item.");
         out.println("4. top up [amount] - Add funds to your account.");
-        out.println("5. view history - View your purchase history.");
-        out.println("6. exit - Exit the application.");
+        out.println("5. view history [since <yyyy-MM-dd>|last <n>|page " + HistoryQuery.USAGE_OPTIONS + "]");
+        out.println("   - View your purchase history, oldest first.");
+        out.println("6. view top [fulfilled|revenue|recent] - View the top 5 sellers.");
+        out.println("7. search [name <prefix>] [contains <text>] [price <min>-<max>] [seller <sellerID>]");
+        out.println("          [sort name|price|stock] [desc] [limit <n>] [offset <n>] - Search for items.");
+        out.println("8. view summary - View your order totals and total spent.");
+        out.println("9. checkout [itemName:quantity] [itemName:quantity] ... - Buy several items in one order.");
+        out.println("10. notifications [on|off] - Turn order status notifications on or off.");
+        out.println("11. exit - Exit the application.");
         out.println("---END---"); // End of command panel
 
         String command;
@@ -173,7 +219,9 @@ public class ClientHandler implements Runnable {
                 continue;
             }
 
+            long start = System.nanoTime();
             processCustomerCommand(command, out, user);
+            metrics.recordCommand("customer", commandName(command), System.nanoTime() - start);
 
             if (command.equalsIgnoreCase("exit")) {
                 out.println("Goodbye!");
@@ -183,6 +231,18 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Names a command for its latency histogram: the first word, and for 'view' commands the
+     * second word as well.
+     *
+     * @param command The command string received from the client.
+     * @return The lowercase command name, such as "buy" or "view items".
+     */
+    private static String commandName(String command) {
+        String[] words = command.trim().toLowerCase().split("\\s+", 3);
+        return words[0].equals("view") && words.length > 1 ? "view " + words[1] : words[0];
+    }
+
     /**
      * Processes customer commands and executes appropriate actions.
      *
@@ -191,7 +251,7 @@ public class ClientHandler implements Runnable {
      * @param user    The authenticated User object.
      */
     private void processCustomerCommand(String command, PrintWriter out, User user) {
-        logger.info("Processing command from user " + user.getUserID() + ": " + command);
+        logger.info(() -> "Processing command from user " + user.getUserID() + ": " + command);
 
         String trimmedCommand = command.trim();
         if (trimmedCommand.isEmpty()) {
@@ -206,23 +266,38 @@ public class ClientHandler implements Runnable {
         switch (action) {
             case "view":
                 if (parts.length < 2) {
-                    out.println("Usage: view [credits|items|history]");
+                    out.println("Usage: view [credits|items|history|top|summary]");
                     out.println("---END---");
                     break;
                 }
-                String subAction = parts[1].toLowerCase();
+                String[] viewParams = parts[1].split("\\s+", 2);
+                String subAction = viewParams[0].toLowerCase();
                 switch (subAction) {
                     case "credits":
                         viewCredits(out, user);
                         break;
                     case "items":
-                        displayAvailableItems(out);
+                        if (viewParams.length < 2) {
+                            displayAvailableItems(out);
+                        } else {
+                            handleItemsSinceCommand(viewParams[1], out);
+                        }
                         break;
                     case "history":
-                        viewPurchaseHistory(out, user);
+                        if (viewParams.length < 2) {
+                            viewPurchaseHistory(out, user);
+                        } else {
+                            handleHistoryRangeCommand(viewParams[1], out, user);
+                        }
+                        break;
+                    case "top":
+                        handleViewTopCommand(viewParams, out);
+                        break;
+                    case "summary":
+                        viewBuyerSummary(out, user);
                         break;
                     default:
-                        out.println("Unknown view command. Usage: view [credits|items|history]");
+                        out.println("Unknown view command. Usage: view [credits|items|history|top|summary]");
                         out.println("---END---");
                         logger.warning("Unknown sub-action for view command from user: " + user.getUserID() + " - " + subAction);
                         break;
@@ -252,6 +327,19 @@ public class ClientHandler implements Runnable {
                 }
                 break;
 
+            case "notifications":
+                handleNotificationsCommand(parts, out, user);
+                break;
+
+            case "checkout":
+                try {
+                    checkout(out, user, Cart.parse(parts.length < 2 ? "" : parts[1]));
+                } catch (IllegalArgumentException e) {
+                    out.println(e.getMessage());
+                    out.println("---END---");
+                }
+                break;
+
             case "top":
                 if (parts.length < 2) {
                     out.println("Usage: top up [amount]");
@@ -274,6 +362,15 @@ public class ClientHandler implements Runnable {
                 }
                 break;
 
+            case "search":
+                try {
+                    searchItems(out, CatalogQuery.parse(parts.length < 2 ? "" : parts[1]));
+                } catch (IllegalArgumentException e) {
+                    out.println(e.getMessage());
+                    out.println("---END---");
+                }
+                break;
+
             case "exit":
                 // Handled in the loop
                 break;
@@ -286,6 +383,57 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Handles the 'notifications [on|off]' command for either role.
+     *
+     * @param parts The split command parts.
+     * @param out   The PrintWriter to send responses to the client.
+     * @param user  The authenticated User object.
+     */
+    private void handleNotificationsCommand(String[] parts, PrintWriter out, User user) {
+        String setting = parts.length < 2 ? "" : parts[1].trim().toLowerCase();
+        if (setting.equals("on")) {
+            if (subscription == null) {
+                subscription = notificationHub.subscribe(user.getUserID(), out);
+            }
+            out.println("Notifications are on.");
+        } else if (setting.equals("off")) {
+            notificationHub.unsubscribe(subscription);
+            subscription = null;
+            out.println("Notifications are off.");
+        } else if (setting.isEmpty()) {
+            out.println("Notifications are " + (subscription == null ? "off" : "on") + ". Usage: notifications [on|off]");
+        } else {
+            out.println("Usage: notifications [on|off]");
+        }
+        out.println("---END---");
+    }
+
+    /**
+     * Handles the 'view top' command issued by the customer.
+     *
+     * @param viewParams The 'view' parameters; the optional second entry names the ranking.
+     * @param out        The PrintWriter to send responses to the client.
+     */
+    private void handleViewTopCommand(String[] viewParams, PrintWriter out) {
+        String rankingName = viewParams.length < 2 ? "fulfilled" : viewParams[1].trim().toLowerCase();
+        switch (rankingName) {
+            case "fulfilled":
+                displayTopSellers(out, SellerLeaderboard.Ranking.FULFILLED);
+                break;
+            case "revenue":
+                displayTopSellers(out, SellerLeaderboard.Ranking.REVENUE);
+                break;
+            case "recent":
+                displayTopSellers(out, SellerLeaderboard.Ranking.RECENT);
+                break;
+            default:
+                out.println("Usage: view top [fulfilled|revenue|recent]");
+                out.println("---END---");
+                break;
+        }
+    }
+
     /**
      * Displays the current balance of the user's account.
      *
@@ -298,7 +446,7 @@ public class ClientHandler implements Runnable {
         if (account != null) {
             out.println("Your current balance: $" + String.format("%.2f", account.getBalance()));
             out.println("---END---");
-            logger.info("User " + user.getUserID() + " viewed credits. Balance: $" + account.getBalance());
+            logger.info(() -> "User " + user.getUserID() + " viewed credits. Balance: $" + account.getBalance());
         } else {
             out.println("Account not found.");
             out.println("---END---");
@@ -308,24 +456,104 @@ public class ClientHandler implements Runnable {
 
     /**
      * Displays all available items for purchase.
+     * The table is shared by all sessions and only re-rendered after the catalog changes.
      *
      * @param out The PrintWriter to send responses to the client.
      */
     private void displayAvailableItems(PrintWriter out) {
-        if (items.isEmpty()) {
-            out.println("No items are currently available.");
+        byte[] catalog = catalogCache.getRenderedCatalog();
+
+        // Flush anything buffered in the writer, then send the encoded table in one write.
+        // Notifications are written under the same monitor, so they cannot land inside it.
+        synchronized (out) {
+            out.flush();
+            try {
+                OutputStream rawOut = clientSocket.getOutputStream();
+                rawOut.write(catalog);
+                rawOut.flush();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error sending catalog: ", e);
+            }
+        }
+    }
+
+    /**
+     * Handles 'view items since <version>': lists only the items changed after the given
+     * catalog version, together with the current version to ask from next time.
+     *
+     * @param args The text after 'items'.
+     * @param out  The PrintWriter to send responses to the client.
+     */
+    private void handleItemsSinceCommand(String args, PrintWriter out) {
+        String[] sinceParams = args.trim().split("\\s+");
+        long since = -1;
+        if (sinceParams.length == 2 && sinceParams[0].equalsIgnoreCase("since")) {
+            try {
+                since = Long.parseLong(sinceParams[1]);
+            } catch (NumberFormatException e) {
+                since = -1;
+            }
+        }
+        if (since < 0) {
+            out.println("Usage: view items [since <version>]");
+            out.println("---END---");
+            return;
+        }
+
+        // Read the version first; every change up to it is already in the changed items
+        long version = catalogCache.getVersion();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Catalog version: ").append(version).append(" (epoch ").append(catalogCache.getEpoch()).append(")\n");
+        int changed = 0;
+        StringBuilder rows = new StringBuilder();
+        for (Item item : catalogCache.getChangedSince(since)) {
+            synchronized (item) {
+                rows.append(String.format("%-20s %-10.2f %-10d %-10d\n",
+                        item.getName(), item.getPrice(), item.getQuantityAvailable(), item.getVersion()));
+            }
+            changed++;
+        }
+        sb.append("Changed items since ").append(since).append(": ").append(changed).append("\n");
+        if (changed > 0) {
+            sb.append(String.format("%-20s %-10s %-10s %-10s\n", "Item Name", "Price($)", "Quantity", "Version"));
+            sb.append("------------------------------------------------------------\n");
+            sb.append(rows);
+        }
+        out.println(sb.toString().trim());
+        out.println("---END---");
+    }
+
+    /**
+     * Displays one page of items matching a catalog search.
+     *
+     * @param out   The PrintWriter to send responses to the client.
+     * @param query The parsed search.
+     */
+    private void searchItems(PrintWriter out, CatalogQuery query) {
+        List<CatalogIndex.Entry> results = catalogIndex.search(query);
+        if (results.isEmpty()) {
+            out.println("No items match your search.");
             out.println("---END---");
             return;
         }
 
+        boolean hasMore = results.size() > query.getLimit();
+        int shown = Math.min(results.size(), query.getLimit());
+
         StringBuilder sb = new StringBuilder();
-        sb.append("Available Items:\n");
-        sb.append(String.format("%-20s %-10s %-10s\n", "Item Name", "Price($)", "Quantity"));
-        sb.append("-------------------------------------------------\n");
-        for (Item item : items.values()) {
-            sb.append(String.format("%-20s %-10.2f %-10d\n",
-                    item.getName(), item.getPrice(), item.getQuantityAvailable()));
+        sb.append("Search Results:\n");
+        sb.append(String.format("%-20s %-10s %-10s %-15s\n", "Item Name", "Price($)", "Quantity", "Seller"));
+        sb.append("-----------------------------------------------------------\n");
+        for (int i = 0; i < shown; i++) {
+            CatalogIndex.Entry entry = results.get(i);
+            sb.append(String.format("%-20s %-10.2f %-10d %-15s\n",
+                    entry.getName(), entry.getPrice(), entry.getQuantityAvailable(), entry.getSellerID()));
         }
+        sb.append("Showing results ").append(query.getOffset() + 1).append("-").append(query.getOffset() + shown).append(".");
+        if (hasMore) {
+            sb.append(" More results available; use offset ").append(query.getOffset() + shown).append(".");
+        }
+
         out.println(sb.toString());
         out.println("---END---");
     }
@@ -349,47 +577,68 @@ public class ClientHandler implements Runnable {
         // Normalize item name
         String normalizedItemName = itemName.toLowerCase();
 
+        OrderResult result = engine.execute(normalizedItemName,
+                () -> reservePurchase(user, itemName, normalizedItemName, quantity));
+
+        if (result.isSuccess()) {
+            SOMSUtils.saveAllData(users, accounts, items, purchases);
+        }
+
+        out.println(result.getMessage());
+        out.println("---END---");
+    }
+
+    /**
+     * Reserves stock and funds for a purchase and records it as pending.
+     * Runs on the thread that owns the item when the engine is partitioned. The item's monitor
+     * is still taken for the stock check: in DIRECT mode this runs on the session thread, and
+     * readers such as 'view items' take it to see price and quantity together. On a partition
+     * it is never contended by another writer.
+     *
+     * @param user               The authenticated User object.
+     * @param itemName           The item name as entered by the customer.
+     * @param normalizedItemName The lowercase item name.
+     * @param quantity           The quantity of the item to purchase.
+     * @return The outcome of the reservation.
+     */
+    private OrderResult reservePurchase(User user, String itemName, String normalizedItemName, int quantity) {
         Item item = items.get(normalizedItemName);
         if (item == null) {
-            out.println("Item \"" + itemName + "\" does not exist.");
-            out.println("---END---");
             logger.warning("User " + user.getUserID() + " attempted to purchase non-existent item: " + itemName);
-            return;
+            metrics.countOrder(Metrics.OrderOutcome.UNKNOWN_ITEM);
+            return OrderResult.failure("Item \"" + itemName + "\" does not exist.");
         }
 
         synchronized (item) {
             if (item.getQuantityAvailable() < quantity) {
-                out.println("Insufficient quantity available for \"" + item.getName() + "\". Available: " + item.getQuantityAvailable());
-                out.println("---END---");
                 logger.warning("User " + user.getUserID() + " attempted to purchase more than available for item: " + item.getName());
-                return;
+                metrics.countOrder(Metrics.OrderOutcome.INSUFFICIENT_STOCK);
+                return OrderResult.failure("Insufficient quantity available for \"" + item.getName() + "\". Available: " + item.getQuantityAvailable());
             }
             item.reduceQuantity(quantity);
         }
+        catalogEvents.itemChanged(item);
 
-        double totalCost = item.getPrice() * quantity;
+        // Purchases hold their cost in whole cents, so reserve exactly that amount
+        double totalCost = Math.round(item.getPrice() * quantity * 100) / 100.0;
         int accountNumber = user.getAccountNumber();
         Account account = accounts.get(accountNumber);
 
         if (account == null) {
-            out.println("Account not found.");
-            out.println("---END---");
             logger.severe("Account not found for userID: " + user.getUserID());
-            synchronized (item) {
-                item.increaseQuantity(quantity);
-            }
-            return;
+            item.increaseQuantity(quantity);
+            catalogEvents.itemChanged(item);
+            metrics.countOrder(Metrics.OrderOutcome.OTHER_FAILURE);
+            return OrderResult.failure("Account not found.");
         }
 
         boolean reserved = account.reserveFunds(totalCost);
         if (!reserved) {
-            out.println("Insufficient balance to reserve $" + String.format("%.2f", totalCost) + ".");
-            out.println("---END---");
             logger.warning("User " + user.getUserID() + " has insufficient balance to reserve funds for purchase.");
-            synchronized (item) {
-                item.increaseQuantity(quantity);
-            }
-            return;
+            item.increaseQuantity(quantity);
+            catalogEvents.itemChanged(item);
+            metrics.countOrder(Metrics.OrderOutcome.INSUFFICIENT_BALANCE);
+            return OrderResult.failure("Insufficient balance to reserve $" + String.format("%.2f", totalCost) + ".");
         }
 
         Purchase purchase = new Purchase();
@@ -401,29 +650,148 @@ public class ClientHandler implements Runnable {
         purchase.setTotalCost(totalCost);
         purchase.setStatus("pending");
 
-        Map<Integer, Purchase> userPurchases = purchases.computeIfAbsent(user.getUserID(), k -> new ConcurrentHashMap<>());
-        int purchaseId = generatePurchaseId(userPurchases);
+        Map<Integer, Purchase> userPurchases = purchases.computeIfAbsent(user.getUserID(),
+                k -> purchaseArchive != null ? purchaseArchive.newBuyerMap() : new IntHashMap<>());
+        int purchaseId = purchaseIdAllocator.next(user.getUserID());
         purchase.setPurchaseId(purchaseId);
         userPurchases.put(purchaseId, purchase);
+        purchaseEvents.purchaseCreated(purchase);
+        metrics.countOrder(Metrics.OrderOutcome.SUCCESS);
 
+        logger.info(() -> "User " + user.getUserID() + " reserved purchase: " + item.getName() + " x" + quantity + " for $" + String.format("%.2f", totalCost));
+        return OrderResult.success("Purchase of \"" + item.getName() + "\" x" + quantity + " reserved for $" + String.format("%.2f", totalCost) + ". Awaiting seller confirmation.");
+    }
+
+    /**
+     * Buys every line of a cart, or nothing. Each line takes its stock through the order engine,
+     * on the partition that owns the item, and the total is then reserved from the customer's
+     * account with no item locked. If a line or the reservation fails, the stock already taken
+     * is given back the same way, so other customers may briefly see it reduced. The purchases
+     * then take a block of consecutive IDs and the data is saved once.
+     *
+     * @param out  The PrintWriter to send responses to the client.
+     * @param user The authenticated User object.
+     * @param cart The items and quantities to buy.
+     */
+    private void checkout(PrintWriter out, User user, Cart cart) {
+        List<Item> cartItems = new ArrayList<>(cart.size());
+        for (String itemKey : cart.getLines().keySet()) {
+            Item item = items.get(itemKey);
+            if (item == null) {
+                out.println("Item \"" + itemKey + "\" does not exist. Nothing was purchased.");
+                out.println("---END---");
+                metrics.countOrder(Metrics.OrderOutcome.UNKNOWN_ITEM);
+                logger.warning("User " + user.getUserID() + " attempted to check out non-existent item: " + itemKey);
+                return;
+            }
+            cartItems.add(item);
+        }
+        Account account = accounts.get(user.getAccountNumber());
+        if (account == null) {
+            logger.severe("Account not found for userID: " + user.getUserID());
+            out.println("Account not found.");
+            out.println("---END---");
+            metrics.countOrder(Metrics.OrderOutcome.OTHER_FAILURE);
+            return;
+        }
+
+        String[] itemKeys = new String[cartItems.size()];
+        int[] quantities = new int[cartItems.size()];
+        long[] costCents = new long[cartItems.size()];
+        OrderResult failure = null;
+        int taken = 0;
+        for (Map.Entry<String, Integer> entry : cart.getLines().entrySet()) {
+            Item item = cartItems.get(taken);
+            int quantity = entry.getValue();
+            int line = taken;
+            OrderResult lineResult = engine.execute(entry.getKey(), () -> takeStock(item, quantity, costCents, line));
+            if (!lineResult.isSuccess()) {
+                metrics.countOrder(Metrics.OrderOutcome.INSUFFICIENT_STOCK);
+                failure = lineResult;
+                break;
+            }
+            itemKeys[line] = entry.getKey();
+            quantities[line] = quantity;
+            taken++;
+        }
+        long totalCents = 0;
+        for (int i = 0; i < taken; i++) {
+            totalCents += costCents[i];
+        }
+        if (failure == null && totalCents > 0 && !account.reserveFunds(totalCents / 100.0)) {
+            metrics.countOrder(Metrics.OrderOutcome.INSUFFICIENT_BALANCE);
+            failure = OrderResult.failure("Insufficient balance to reserve $" + String.format("%.2f", totalCents / 100.0)
+                    + ". Nothing was purchased.");
+        }
+        if (failure != null) {
+            for (int i = 0; i < taken; i++) {
+                Item item = cartItems.get(i);
+                int quantity = quantities[i];
+                engine.execute(itemKeys[i], () -> {
+                    item.increaseQuantity(quantity);
+                    catalogEvents.itemChanged(item);
+                    return null;
+                });
+            }
+            out.println(failure.getMessage());
+            out.println("---END---");
+            logger.warning("Checkout for user " + user.getUserID() + " failed: " + failure.getMessage());
+            return;
+        }
+        String total = String.format("$%.2f", totalCents / 100.0);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Purchase> userPurchases = purchases.computeIfAbsent(user.getUserID(),
+                k -> purchaseArchive != null ? purchaseArchive.newBuyerMap() : new IntHashMap<>());
+        int firstId = purchaseIdAllocator.nextBlock(user.getUserID(), cartItems.size());
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-5s %-20s %-10s %-10s\n", "ID", "Item Name", "Quantity", "Cost($)"));
+        sb.append("----------------------------------------------\n");
+        for (int i = 0; i < cartItems.size(); i++) {
+            Item item = cartItems.get(i);
+            Purchase purchase = new Purchase();
+            purchase.setUserID(user.getUserID());
+            purchase.setItemName(item.getName());
+            purchase.setQuantity(quantities[i]);
+            purchase.setPurchaseDate(now);
+            purchase.setSellerID(item.getSellerID());
+            purchase.setTotalCost(costCents[i] / 100.0);
+            purchase.setStatus("pending");
+            purchase.setPurchaseId(firstId + i);
+            userPurchases.put(firstId + i, purchase);
+            purchaseEvents.purchaseCreated(purchase);
+            sb.append(String.format("%-5d %-20s %-10d %-10.2f\n", firstId + i, item.getName(), quantities[i], costCents[i] / 100.0));
+        }
+        metrics.countOrder(Metrics.OrderOutcome.SUCCESS);
         SOMSUtils.saveAllData(users, accounts, items, purchases);
 
-        out.println("Purchase of \"" + item.getName() + "\" x" + quantity + " reserved for $" + String.format("%.2f", totalCost) + ". Awaiting seller confirmation.");
+        sb.append(cartItems.size()).append(" items reserved for ").append(total).append(". Awaiting seller confirmation.");
+        out.println(sb.toString());
         out.println("---END---");
-        logger.info("User " + user.getUserID() + " reserved purchase: " + item.getName() + " x" + quantity + " for $" + String.format("%.2f", totalCost));
+        logger.info(() -> "User " + user.getUserID() + " checked out " + cartItems.size() + " items for " + total);
     }
 
     /**
-     * Generates a unique purchase ID based on existing purchases.
+     * Takes the stock for one cart line. Runs on the thread that owns the item when the engine
+     * is partitioned; the monitor is held for the same reasons as in reservePurchase.
      *
-     * @param userPurchases The map of existing purchases for the user.
-     * @return A unique purchase ID.
+     * @param item      The item to take stock from.
+     * @param quantity  The quantity to take.
+     * @param costCents The cost of each line, in cents; this line's entry is set on success.
+     * @param line      The index of the line in the cart.
+     * @return The outcome for the line.
      */
-    private int generatePurchaseId(Map<Integer, Purchase> userPurchases) {
-        if (userPurchases.isEmpty()) {
-            return 1;
+    private OrderResult takeStock(Item item, int quantity, long[] costCents, int line) {
+        synchronized (item) {
+            if (item.getQuantityAvailable() < quantity) {
+                return OrderResult.failure("Insufficient quantity available for \"" + item.getName() + "\". Available: "
+                        + item.getQuantityAvailable() + ". Nothing was purchased.");
+            }
+            item.reduceQuantity(quantity);
+            costCents[line] = Math.round(item.getPrice() * quantity * 100);
         }
-        return Collections.max(userPurchases.keySet()) + 1;
+        catalogEvents.itemChanged(item);
+        return OrderResult.success("");
     }
 
     /**
@@ -459,7 +827,7 @@ public class ClientHandler implements Runnable {
 
         out.println("Top-up successful. New balance: $" + String.format("%.2f", account.getBalance()));
         out.println("---END---");
-        logger.info("User " + user.getUserID() + " topped up $" + String.format("%.2f", amount) + ". New balance: $" + String.format("%.2f", account.getBalance()));
+        logger.info(() -> "User " + user.getUserID() + " topped up $" + String.format("%.2f", amount) + ". New balance: $" + String.format("%.2f", account.getBalance()));
     }
 
     /**
@@ -469,8 +837,86 @@ public class ClientHandler implements Runnable {
      * @param user The authenticated User object.
      */
     private void viewPurchaseHistory(PrintWriter out, User user) {
-        Map<Integer, Purchase> userPurchases = purchases.get(user.getUserID());
-        if (userPurchases == null || userPurchases.isEmpty()) {
+        writePurchaseHistory(out, buyerIndex.getPurchases(user.getUserID()));
+        logger.info(() -> "User " + user.getUserID() + " viewed purchase history.");
+    }
+
+    /**
+     * Displays the customer's running order totals.
+     *
+     * @param out  The PrintWriter to send responses to the client.
+     * @param user The authenticated User object.
+     */
+    private void viewBuyerSummary(PrintWriter out, User user) {
+        PurchaseAggregates.Totals totals = purchaseAggregates.getBuyerTotals(user.getUserID());
+        StringBuilder sb = new StringBuilder();
+        sb.append("Order Summary:\n");
+        sb.append(String.format("Orders placed: %d\n", totals.getOrders()));
+        sb.append(String.format("Pending: %d ($%.2f reserved)\n", totals.getPendingCount(), totals.getPendingCents() / 100.0));
+        sb.append(String.format("Delivered: %d\n", totals.getFulfilledCount()));
+        sb.append(String.format("Unfulfilled: %d ($%.2f refunded)\n", totals.getUnfulfilledCount(), totals.getUnfulfilledCents() / 100.0));
+        sb.append(String.format("Total spent: $%.2f", totals.getFulfilledCents() / 100.0));
+        out.println(sb.toString());
+        out.println("---END---");
+        logger.info(() -> "User " + user.getUserID() + " viewed order summary.");
+    }
+
+    /**
+     * Handles the 'view history since|last|page ...' forms of the customer's history command.
+     *
+     * @param args The text after 'history'.
+     * @param out  The PrintWriter to send responses to the client.
+     * @param user The authenticated User object.
+     */
+    private void handleHistoryRangeCommand(String args, PrintWriter out, User user) {
+        String[] rangeParams = args.trim().split("\\s+", 2);
+        String mode = rangeParams[0].toLowerCase();
+        if (mode.equals("page")) {
+            handleHistoryPageCommand(args, out, user, false);
+            return;
+        }
+        if (rangeParams.length < 2 || (!mode.equals("since") && !mode.equals("last"))) {
+            out.println("Usage: view history [since <yyyy-MM-dd>|last <n>|page " + HistoryQuery.USAGE_OPTIONS + "]");
+            out.println("---END---");
+            return;
+        }
+
+        String value = rangeParams[1].trim();
+        if (mode.equals("since")) {
+            LocalDateTime since;
+            try {
+                since = value.contains("T") ? LocalDateTime.parse(value) : LocalDate.parse(value).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                out.println("Invalid date. Use yyyy-MM-dd or yyyy-MM-ddTHH:mm.");
+                out.println("---END---");
+                return;
+            }
+            writePurchaseHistory(out, buyerIndex.getPurchasesSince(user.getUserID(), since));
+        } else {
+            int count;
+            try {
+                count = Integer.parseInt(value);
+                if (count <= 0) {
+                    throw new NumberFormatException("Count must be positive.");
+                }
+            } catch (NumberFormatException e) {
+                out.println("Invalid count. Please enter a positive integer value.");
+                out.println("---END---");
+                return;
+            }
+            writePurchaseHistory(out, buyerIndex.getLatestPurchases(user.getUserID(), count));
+        }
+        logger.info(() -> "User " + user.getUserID() + " viewed purchase history " + mode + " " + value + ".");
+    }
+
+    /**
+     * Writes a purchase history table for the given purchases.
+     *
+     * @param out       The PrintWriter to send responses to the client.
+     * @param purchases The purchases to list, in display order.
+     */
+    private void writePurchaseHistory(PrintWriter out, Collection<Purchase> purchases) {
+        if (purchases.isEmpty()) {
             out.println("No purchase history found.");
             out.println("---END---");
             return;
@@ -478,33 +924,111 @@ public class ClientHandler implements Runnable {
 
         StringBuilder sb = new StringBuilder();
         sb.append("Purchase History:\n");
-        sb.append(String.format("%-5s %-20s %-10s %-20s %-15s %-10s %-10s\n",
-                "ID", "Item Name", "Quantity", "Date", "Seller", "Cost($)", "Status"));
-        sb.append("------------------------------------------------------------------------------------------\n");
+        appendHistoryHeader(sb);
+
+        for (Purchase purchase : purchases) {
+            appendHistoryRow(sb, purchase);
+        }
+
+        out.println(sb.toString());
+        out.println("---END---");
+    }
+
+    /**
+     * Handles a paginated 'view history page ...' or 'view transactions page ...' command.
+     *
+     * @param args     The text after 'history' or 'transactions', starting with 'page'.
+     * @param out      The PrintWriter to send responses to the client.
+     * @param user     The authenticated User object.
+     * @param asSeller True to page through the seller's transactions, false for the buyer's history.
+     */
+    private void handleHistoryPageCommand(String args, PrintWriter out, User user, boolean asSeller) {
+        String view = asSeller ? "view transactions" : "view history";
+        String[] pageParams = args.trim().split("\\s+", 2);
+        if (!pageParams[0].equalsIgnoreCase("page")) {
+            out.println("Usage: " + view + " [page " + HistoryQuery.USAGE_OPTIONS + "]");
+            out.println("---END---");
+            return;
+        }
+
+        HistoryQuery query;
+        try {
+            query = HistoryQuery.parse(pageParams.length < 2 ? "" : pageParams[1]);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println("---END---");
+            return;
+        }
 
-        for (Map.Entry<Integer, Purchase> entry : userPurchases.entrySet()) {
-            Purchase purchase = entry.getValue();
-            String purchaseSellerID = purchase.getSellerID();
+        List<Purchase> page = asSeller
+                ? query.fetchPage(sellerIndex.getPurchases(user.getUserID()), p -> isSellerTransaction(p, user.getUserID()))
+                : query.fetchPage(buyerIndex.getPurchases(user.getUserID()));
+        int shown = Math.min(page.size(), query.getPageSize());
 
-            // Add null check for sellerID
-            String sellerDisplay = "N/A";
-            if (purchaseSellerID != null && !purchaseSellerID.equalsIgnoreCase("unfulfilled")) {
-                sellerDisplay = purchaseSellerID;
+        StringBuilder sb = new StringBuilder();
+        if (asSeller) {
+            sb.append("Transaction History:\n");
+            appendTransactionHeader(sb);
+        } else {
+            sb.append("Purchase History:\n");
+            appendHistoryHeader(sb);
+        }
+        for (int i = 0; i < shown; i++) {
+            if (asSeller) {
+                appendTransactionRow(sb, page.get(i));
+            } else {
+                appendHistoryRow(sb, page.get(i));
             }
+        }
 
-            sb.append(String.format("%-5d %-20s %-10d %-20s %-15s %-10.2f %-10s\n",
-                    purchase.getPurchaseId(),
-                    purchase.getItemName(),
-                    purchase.getQuantity(),
-                    purchase.getPurchaseDate().toString(),
-                    sellerDisplay,
-                    purchase.getTotalCost(),
-                    purchase.getStatus()));
+        if (shown == 0) {
+            sb.append("No matching purchases found.");
+        } else if (page.size() > shown) {
+            sb.append("More results available. Next page: ").append(view).append(" page cursor ")
+                    .append(HistoryQuery.encodeCursor(page.get(shown - 1)))
+                    .append(" (repeat any filters).");
+        } else {
+            sb.append("End of results.");
         }
 
         out.println(sb.toString());
         out.println("---END---");
-        logger.info("User " + user.getUserID() + " viewed purchase history.");
+    }
+
+    /**
+     * Appends the column header used by the customer's purchase history tables.
+     *
+     * @param sb The StringBuilder to append to.
+     */
+    private void appendHistoryHeader(StringBuilder sb) {
+        sb.append(String.format("%-5s %-20s %-10s %-20s %-15s %-10s %-10s\n",
+                "ID", "Item Name", "Quantity", "Date", "Seller", "Cost($)", "Status"));
+        sb.append("------------------------------------------------------------------------------------------\n");
+    }
+
+    /**
+     * Appends one purchase as a row of the customer's purchase history tables.
+     *
+     * @param sb       The StringBuilder to append to.
+     * @param purchase The purchase to append.
+     */
+    private void appendHistoryRow(StringBuilder sb, Purchase purchase) {
+        String purchaseSellerID = purchase.getSellerID();
+
+        // Add null check for sellerID
+        String sellerDisplay = "N/A";
+        if (purchaseSellerID != null && !purchaseSellerID.equalsIgnoreCase("unfulfilled")) {
+            sellerDisplay = purchaseSellerID;
+        }
+
+        sb.append(String.format("%-5d %-20s %-10d %-20s %-15s %-10.2f %-10s\n",
+                purchase.getPurchaseId(),
+                purchase.getItemName(),
+                purchase.getQuantity(),
+                purchase.getPurchaseDate().toString(),
+                sellerDisplay,
+                purchase.getTotalCost(),
+                purchase.getStatus()));
     }
 
     /**
@@ -520,8 +1044,19 @@ public class ClientHandler implements Runnable {
         out.println("Available Commands for Sellers:");
         out.println("1. add [itemName] [price] [quantity] - Add or update an item in inventory.");
         out.println("2. complete [buyerID] [purchaseId] [delivered|unfulfilled] - Mark a purchase as delivered or unfulfilled.");
-        out.println("3. view transactions - View all your transaction history.");
-        out.println("4. exit - Exit the application.");
+        out.println("   complete all pending [itemName] - Mark all your pending orders, or those for one item, as delivered.");
+        out.println("   complete batch [buyerID:purchaseId,...] [delivered|unfulfilled] - Complete several purchases at once.");
+        out.println("   view credits - View your balance, including credits not yet settled.");
+        out.println("   import [csv|jsonl] - Add or update many items; send name,price,quantity records, then ---END---.");
+        out.println("   export [items|transactions] [csv|jsonl] - Download your items or transactions.");
+        out.println("3. view transactions [page " + HistoryQuery.USAGE_OPTIONS + "] - View your transaction history.");
+        out.println("4. view pending - View your pending orders, oldest first.");
+        out.println("5. view stats " + StatsRange.USAGE_OPTIONS + " - View revenue per item and day, fulfilment rate and average order.");
+        out.println("6. view summary - View your order totals and revenue.");
+        out.println("7. view activity [minutes|hours] [itemName] - View shop-wide orders, revenue and fulfilment time for the last hour or day.");
+        out.println("   view metrics - View server command latencies (p50/p90/p99), save times and order outcomes.");
+        out.println("8. notifications [on|off] - Turn new order notifications on or off.");
+        out.println("9. exit - Exit the application.");
         out.println("---END---"); // End of command panel
 
         String command;
@@ -533,7 +1068,9 @@ public class ClientHandler implements Runnable {
                 continue;
             }
 
-            processSellerCommand(command, out, user);
+            long start = System.nanoTime();
+            processSellerCommand(command, out, in, user);
+            metrics.recordCommand("seller", commandName(command), System.nanoTime() - start);
 
             if (command.equalsIgnoreCase("exit")) {
                 out.println("Goodbye!");
@@ -548,10 +1085,12 @@ public class ClientHandler implements Runnable {
      *
      * @param command The command string received from the client.
      * @param out     The PrintWriter to send responses to the client.
+     * @param in      The BufferedReader to read uploads that follow a command.
      * @param user    The authenticated User object representing the seller.
+     * @throws IOException If an I/O error occurs while reading an upload.
      */
-    private void processSellerCommand(String command, PrintWriter out, User user) {
-        logger.info("Processing command from seller " + user.getUserID() + ": " + command);
+    private void processSellerCommand(String command, PrintWriter out, BufferedReader in, User user) throws IOException {
+        logger.info(() -> "Processing command from seller " + user.getUserID() + ": " + command);
 
         String trimmedCommand = command.trim();
         if (trimmedCommand.isEmpty()) {
@@ -579,6 +1118,18 @@ public class ClientHandler implements Runnable {
                 handleViewCommand(parts, out, user);
                 break;
 
+            case "import":
+                handleImportCommand(parts, out, in, user);
+                break;
+
+            case "notifications":
+                handleNotificationsCommand(parts, out, user);
+                break;
+
+            case "export":
+                handleExportCommand(parts, out, user);
+                break;
+
             case "exit":
                 // Handle the 'exit' command
                 handleExitCommand(out, user);
@@ -609,6 +1160,14 @@ public class ClientHandler implements Runnable {
 
         // Split the parameters into buyerID, purchaseId, and status
         String[] completeParams = parts[1].split("\\s+");
+        if (completeParams[0].equalsIgnoreCase("all")) {
+            handleCompleteAllCommand(completeParams, out, user);
+            return;
+        }
+        if (completeParams[0].equalsIgnoreCase("batch")) {
+            handleCompleteBatchCommand(completeParams, out, user);
+            return;
+        }
         if (completeParams.length < 3) {
             out.println("Usage: complete [buyerID] [purchaseId] [delivered|unfulfilled]");
             out.println("---END---");
@@ -644,167 +1203,307 @@ public class ClientHandler implements Runnable {
     }
 
     /**
-     * Completes a transaction by marking it as delivered or unfulfilled.
+     * Handles 'complete all pending [itemName]': marks the seller's pending orders as delivered.
      *
-     * @param out        The PrintWriter to send responses to the client.
-     * @param buyerID    The ID of the buyer associated with the purchase.
-     * @param purchaseId The ID of the purchase to complete.
-     * @param status     The status to mark the purchase as ("delivered" or "unfulfilled").
-     * @param user       The seller performing the action.
+     * @param completeParams The parameters after 'complete'.
+     * @param out            The PrintWriter to send responses to the client.
+     * @param user           The authenticated User object representing the seller.
      */
-    private void completeTransaction(PrintWriter out, String buyerID, int purchaseId, String status, User user) {
-        logger.info("Attempting to complete transaction. Buyer ID: " + buyerID + ", Purchase ID: " + purchaseId + ", Status: " + status);
-
-        Purchase purchase = null;
-
-        // Validate buyerID exists
-        if (!purchases.containsKey(buyerID)) {
-            out.println("Buyer ID not found.");
+    private void handleCompleteAllCommand(String[] completeParams, PrintWriter out, User user) {
+        if (completeParams.length < 2 || completeParams.length > 3 || !completeParams[1].equalsIgnoreCase("pending")) {
+            out.println("Usage: complete all pending [itemName]");
             out.println("---END---");
-            logger.warning("Seller " + user.getUserID() + " attempted to complete a purchase for non-existent buyer ID: " + buyerID);
             return;
         }
 
-        Map<Integer, Purchase> buyerPurchases = purchases.get(buyerID);
-        if (buyerPurchases == null || !buyerPurchases.containsKey(purchaseId)) {
-            out.println("Purchase ID not found for the specified buyer.");
-            out.println("---END---");
-            logger.warning("Seller " + user.getUserID() + " attempted to complete non-existent purchase ID: " + purchaseId + " for buyer ID: " + buyerID);
-            return;
+        String itemKey = completeParams.length == 3 ? completeParams[2].toLowerCase() : null;
+        List<String> buyerIDs = new ArrayList<>();
+        List<Integer> purchaseKeys = new ArrayList<>();
+        List<Purchase> selected = new ArrayList<>();
+        for (Purchase purchase : sellerIndex.getPendingPurchases(user.getUserID())) {
+            if (itemKey == null || (purchase.getItemName() != null && purchase.getItemName().equalsIgnoreCase(itemKey))) {
+                // Older data may file a purchase under other keys; those are completed one by one
+                Map<Integer, Purchase> buyerPurchases = purchases.get(purchase.getUserID());
+                boolean filedUnderIds = buyerPurchases != null
+                        && IntHashMap.lookup(buyerPurchases, purchase.getPurchaseId()) == purchase;
+                buyerIDs.add(purchase.getUserID());
+                purchaseKeys.add(purchase.getPurchaseId());
+                selected.add(filedUnderIds ? purchase : null);
+            }
         }
-
-        purchase = buyerPurchases.get(purchaseId);
-
-        // Ensure purchase is not null
-        if (purchase == null) {
-            out.println("Purchase details are unavailable.");
+        if (selected.isEmpty()) {
+            out.println(itemKey == null ? "No pending orders found." : "No pending orders found for \"" + itemKey + "\".");
             out.println("---END---");
-            logger.warning("Purchase details are null for Purchase ID: " + purchaseId + " and Buyer ID: " + buyerID);
             return;
         }
-
-        synchronized (purchase) {
-            if (!purchase.getStatus().equalsIgnoreCase("pending")) {
-                out.println("Purchase already processed.");
-                out.println("---END---");
-                logger.warning("Purchase ID " + purchaseId + " for Buyer ID " + buyerID + " is already " + purchase.getStatus() + ".");
-                return;
-            }
-
-            if (status.equals("delivered")) {
-                // Handle 'delivered' status
-                handleDeliveredStatus(out, purchase, user, buyerID);
-            } else if (status.equals("unfulfilled")) {
-                // Handle 'unfulfilled' status
-                handleUnfulfilledStatus(out, purchase, user, buyerID);
-            }
-        }
+        completeTransactions(out, buyerIDs, purchaseKeys, selected, "delivered", user);
     }
 
     /**
-     * Handles the 'delivered' status for a completed transaction.
+     * Handles 'complete batch [buyerID:purchaseId,...] [delivered|unfulfilled]'.
      *
-     * @param out      The PrintWriter to send responses to the client.
-     * @param purchase The Purchase object being processed.
-     * @param user     The seller performing the action.
-     * @param buyerID  The ID of the buyer associated with the purchase.
+     * @param completeParams The parameters after 'complete'.
+     * @param out            The PrintWriter to send responses to the client.
+     * @param user           The authenticated User object representing the seller.
      */
-    private void handleDeliveredStatus(PrintWriter out, Purchase purchase, User user, String buyerID) {
-        double amount = purchase.getTotalCost();
-        int sellerAccountNumber = user.getAccountNumber();
-        Account sellerAccount = accounts.get(sellerAccountNumber);
+    private void handleCompleteBatchCommand(String[] completeParams, PrintWriter out, User user) {
+        if (completeParams.length != 3) {
+            out.println("Usage: complete batch [buyerID:purchaseId,...] [delivered|unfulfilled]");
+            out.println("---END---");
+            return;
+        }
+        String status = completeParams[2].toLowerCase();
+        if (!status.equals("delivered") && !status.equals("unfulfilled")) {
+            out.println("Invalid status. Use 'delivered' or 'unfulfilled'.");
+            out.println("---END---");
+            return;
+        }
 
-        if (sellerAccount == null) {
-            out.println("Seller account not found.");
+        List<String> buyerIDs = new ArrayList<>();
+        List<Integer> purchaseKeys = new ArrayList<>();
+        List<Purchase> selected = new ArrayList<>();
+        for (String target : completeParams[1].split(",")) {
+            if (target.isEmpty()) {
+                continue;
+            }
+            int separator = target.lastIndexOf(':');
+            int purchaseId;
+            try {
+                purchaseId = separator <= 0 ? -1 : Integer.parseInt(target.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                purchaseId = -1;
+            }
+            if (purchaseId <= 0) {
+                out.println("Invalid entry '" + target + "'. Use buyerID:purchaseId with a positive purchase ID.");
+                out.println("---END---");
+                return;
+            }
+            String buyerID = target.substring(0, separator);
+            Map<Integer, Purchase> buyerPurchases = purchases.get(buyerID);
+            buyerIDs.add(buyerID);
+            purchaseKeys.add(purchaseId);
+            selected.add(buyerPurchases == null ? null : IntHashMap.lookup(buyerPurchases, purchaseId));
+        }
+        if (selected.isEmpty()) {
+            out.println("Usage: complete batch [buyerID:purchaseId,...] [delivered|unfulfilled]");
             out.println("---END---");
-            logger.severe("Seller " + user.getUserID() + " account not found.");
             return;
         }
+        completeTransactions(out, buyerIDs, purchaseKeys, selected, status, user);
+    }
 
-        // Transfer funds to seller's account
-        synchronized (sellerAccount) {
-            sellerAccount.addFunds(amount);
+    /**
+     * Completes several purchases in one pass. Delivered purchases are credited through the
+     * settlement ledger, which adds them to the seller's balance as one sum, and the data is
+     * saved once, after all purchases have been processed.
+     *
+     * @param out          The PrintWriter to send responses to the client.
+     * @param buyerIDs     The buyer each purchase is filed under, parallel to purchases.
+     * @param purchaseKeys The key each purchase is filed under in its buyer's purchases.
+     * @param selected     The purchases to complete; null for one that was not found.
+     * @param status       The status to mark them as ("delivered" or "unfulfilled").
+     * @param user         The seller performing the action.
+     */
+    private void completeTransactions(PrintWriter out, List<String> buyerIDs, List<Integer> purchaseKeys,
+                                      List<Purchase> selected, String status, User user) {
+        Account sellerAccount = accounts.get(user.getAccountNumber());
+        if (status.equals("delivered") && sellerAccount == null) {
+            logger.severe("Seller " + user.getUserID() + " account not found.");
+            out.println("Seller account not found.");
+            out.println("---END---");
+            return;
         }
 
-        // Update purchase status
-        purchase.setStatus("fulfilled");
-        // No need to update sellerID since it was already set during purchase
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-15s %-5s %-20s %-10s %-30s\n", "Buyer", "ID", "Item Name", "Cost($)", "Result"));
+        sb.append("----------------------------------------------------------------------------------\n");
+        long creditCents = 0;
+        int completed = 0;
+        for (int i = 0; i < selected.size(); i++) {
+            String buyerID = buyerIDs.get(i);
+            int purchaseKey = purchaseKeys.get(i);
+            Purchase purchase = selected.get(i);
+            if (purchase == null) {
+                sb.append(String.format("%-15s %-5s %-20s %-10s %-30s\n", buyerID, "-", "-", "-", "Purchase not found."));
+                continue;
+            }
+            if (!isSellerTransaction(purchase, user.getUserID())) {
+                // Only the seller of the item may complete it and be credited
+                sb.append(String.format("%-15s %-5d %-20s %-10s %-30s\n", buyerID, purchase.getPurchaseId(),
+                        purchase.getItemName(), "-", "Not one of your orders."));
+                logger.warning("Seller " + user.getUserID() + " attempted to complete purchase ID: "
+                        + purchase.getPurchaseId() + " of another seller for buyer ID: " + buyerID);
+                continue;
+            }
 
-        // Persist data
-        SOMSUtils.saveAllData(users, accounts, items, purchases);
+            // Each purchase is still settled on the partition that owns its item
+            OrderResult outcome = engine.execute(purchase.getItemName().toLowerCase(), () -> {
+                synchronized (purchase) {
+                    if (!purchase.getStatus().equalsIgnoreCase("pending")) {
+                        return OrderResult.failure("Already " + purchase.getStatus() + ".");
+                    }
+                    OrderResult released = OrderResult.success("Delivered.");
+                    if (status.equals("delivered")) {
+                        // Marks the purchase fulfilled once the credit is in the ledger
+                        settlementLedger.credit(purchase, buyerID, purchaseKey, user);
+                    } else {
+                        released = reservations.release(purchase, buyerID);
+                        if (released.isSuccess()) {
+                            released = OrderResult.success("Unfulfilled, refunded.");
+                        }
+                    }
+                    if (released.isSuccess()) {
+                        purchaseEvents.purchaseCompleted(purchase);
+                    }
+                    return released;
+                }
+            });
+            if (outcome.isSuccess()) {
+                completed++;
+                if (status.equals("delivered")) {
+                    creditCents += purchase.getTotalCostCents();
+                }
+            }
+            sb.append(String.format("%-15s %-5d %-20s %-10.2f %-30s\n", buyerID, purchase.getPurchaseId(),
+                    purchase.getItemName(), purchase.getTotalCost(), outcome.getMessage()));
+        }
+
+        if (completed > 0) {
+            SOMSUtils.saveAllData(users, accounts, items, purchases);
+        }
 
-        // Notify seller
-        out.println("Purchase ID " + purchase.getPurchaseId() + " for buyer ID " + buyerID + " marked as delivered. $" + String.format("%.2f", amount) + " transferred to your account.");
+        sb.append(String.format("%d of %d purchases marked as %s.", completed, selected.size(), status));
+        if (creditCents > 0) {
+            sb.append(String.format(" $%.2f transferred to your account.", creditCents / 100.0));
+        }
+        out.println(sb.toString());
         out.println("---END---");
-        logger.info("Seller " + user.getUserID() + " fulfilled purchase ID: " + purchase.getPurchaseId() + " for buyer ID: " + buyerID + " and transferred $" + String.format("%.2f", amount) + " to their account.");
+        if (logger.isLoggable(Level.INFO)) {
+            logger.info("Seller " + user.getUserID() + " completed " + completed + " of " + selected.size()
+                    + " purchases as " + status + ", crediting $" + String.format("%.2f", creditCents / 100.0) + ".");
+        }
     }
 
     /**
-     * Handles the 'unfulfilled' status for a completed transaction.
+     * Completes a transaction by marking it as delivered or unfulfilled.
      *
-     * @param out      The PrintWriter to send responses to the client.
-     * @param purchase The Purchase object being processed.
-     * @param user     The seller performing the action.
-     * @param buyerID  The ID of the buyer associated with the purchase.
+     * @param out        The PrintWriter to send responses to the client.
+     * @param buyerID    The ID of the buyer associated with the purchase.
+     * @param purchaseId The ID of the purchase to complete.
+     * @param status     The status to mark the purchase as ("delivered" or "unfulfilled").
+     * @param user       The seller performing the action.
      */
-    private void handleUnfulfilledStatus(PrintWriter out, Purchase purchase, User user, String buyerID) {
-        double amount = purchase.getTotalCost();
-
-        // Log the attempt to mark as unfulfilled
-        logger.info("Seller " + user.getUserID() + " is attempting to mark Purchase ID " + purchase.getPurchaseId() +
-                " for Buyer ID " + buyerID + " as unfulfilled.");
+    private void completeTransaction(PrintWriter out, String buyerID, int purchaseId, String status, User user) {
+        logger.info(() -> "Attempting to complete transaction. Buyer ID: " + buyerID + ", Purchase ID: " + purchaseId + ", Status: " + status);
 
-        // Get customer information
-        User customer = users.get(buyerID);
-        if (customer == null) {
+        // Validate buyerID exists
+        if (!purchases.containsKey(buyerID)) {
             out.println("Buyer ID not found.");
             out.println("---END---");
-            logger.severe("Buyer ID " + buyerID + " not found.");
+            logger.warning("Seller " + user.getUserID() + " attempted to complete a purchase for non-existent buyer ID: " + buyerID);
             return;
         }
 
-        // Get customer's account number and validate account exists
-        int customerAccountNumber = customer.getAccountNumber();
-        Account customerAccount = accounts.get(customerAccountNumber);
-        if (customerAccount == null) {
-            out.println("Customer account not found.");
+        Map<Integer, Purchase> buyerPurchases = purchases.get(buyerID);
+        // Looked up without boxing the purchase ID
+        Purchase purchase = buyerPurchases == null ? null : IntHashMap.lookup(buyerPurchases, purchaseId);
+        if (purchase == null) {
+            out.println("Purchase ID not found for the specified buyer.");
             out.println("---END---");
-            logger.severe("Customer account number " + customerAccountNumber + " for Buyer ID " + buyerID + " not found.");
+            logger.warning("Seller " + user.getUserID() + " attempted to complete non-existent purchase ID: " + purchaseId + " for buyer ID: " + buyerID);
             return;
         }
-
-        // Return funds to customer's account
-        synchronized (customerAccount) {
-            customerAccount.releaseFunds(amount);
+        if (!isSellerTransaction(purchase, user.getUserID())) {
+            out.println("You can only complete orders for your own items.");
+            out.println("---END---");
+            logger.warning("Seller " + user.getUserID() + " attempted to complete purchase ID: " + purchaseId + " of another seller for buyer ID: " + buyerID);
+            return;
         }
-        logger.info("Released $" + String.format("%.2f", amount) + " to Customer account number " + customerAccountNumber + ".");
 
-        // Update purchase status
-        purchase.setStatus("unfulfilled");
-        purchase.setSellerID("unfulfilled"); // Indicates unfulfilled status
-        logger.info("Updated Purchase ID " + purchase.getPurchaseId() + " status to 'unfulfilled'.");
+        // Completion is routed to the partition that owns the purchased item
+        OrderResult result = engine.execute(purchase.getItemName().toLowerCase(), () -> {
+            synchronized (purchase) {
+                if (!purchase.getStatus().equalsIgnoreCase("pending")) {
+                    logger.warning("Purchase ID " + purchaseId + " for Buyer ID " + buyerID + " is already " + purchase.getStatus() + ".");
+                    return OrderResult.failure("Purchase already processed.");
+                }
 
-        // Restore item quantity in inventory
-        synchronized (items) {
-            Item item = getItemByName(purchase.getItemName());
-            if (item != null) {
-                item.increaseQuantity(purchase.getQuantity());
-                logger.info("Restored quantity for item: " + purchase.getItemName() + ", Quantity: " + purchase.getQuantity());
-            } else {
-                logger.warning("Item \"" + purchase.getItemName() + "\" not found during quantity restoration.");
+                OrderResult outcome;
+                if (status.equals("delivered")) {
+                    // Handle 'delivered' status
+                    outcome = handleDeliveredStatus(purchase, user, buyerID, purchaseId);
+                } else {
+                    // Handle 'unfulfilled' status
+                    outcome = handleUnfulfilledStatus(purchase, user, buyerID);
+                }
+                if (outcome.isSuccess()) {
+                    purchaseEvents.purchaseCompleted(purchase);
+                }
+                return outcome;
             }
-        }
+        });
 
-        // Persist data
-        SOMSUtils.saveAllData(users, accounts, items, purchases);
-        logger.info("Persisted data after marking Purchase ID " + purchase.getPurchaseId() + " as unfulfilled.");
+        if (result.isSuccess()) {
+            // Persist data
+            SOMSUtils.saveAllData(users, accounts, items, purchases);
+        }
 
-        // Notify seller
-        out.println("Purchase ID " + purchase.getPurchaseId() + " for buyer ID " + buyerID + " marked as unfulfilled. $" +
-                String.format("%.2f", amount) + " returned to the customer.");
+        out.println(result.getMessage());
         out.println("---END---");
-        logger.info("Seller " + user.getUserID() + " successfully marked Purchase ID " + purchase.getPurchaseId() +
+    }
+
+    /**
+     * Handles the 'delivered' status for a completed transaction.
+     *
+     * @param purchase    The Purchase object being processed.
+     * @param user        The seller performing the action.
+     * @param buyerID     The ID of the buyer associated with the purchase.
+     * @param purchaseKey The key the purchase is filed under in the buyer's purchases.
+     * @return The outcome to report to the seller.
+     */
+    private OrderResult handleDeliveredStatus(Purchase purchase, User user, String buyerID, int purchaseKey) {
+        double amount = purchase.getTotalCost();
+        int sellerAccountNumber = user.getAccountNumber();
+        Account sellerAccount = accounts.get(sellerAccountNumber);
+
+        if (sellerAccount == null) {
+            logger.severe("Seller " + user.getUserID() + " account not found.");
+            return OrderResult.failure("Seller account not found.");
+        }
+
+        // Credit the seller through the ledger, which then marks the purchase fulfilled; the
+        // credit is added to their balance with the next settlement
+        settlementLedger.credit(purchase, buyerID, purchaseKey, user);
+        // No need to update sellerID since it was already set during purchase
+
+        logger.info(() -> "Seller " + user.getUserID() + " fulfilled purchase ID: " + purchase.getPurchaseId() + " for buyer ID: " + buyerID + " and transferred $" + String.format("%.2f", amount) + " to their account.");
+        return OrderResult.success("Purchase ID " + purchase.getPurchaseId() + " for buyer ID " + buyerID + " marked as delivered. $" + String.format("%.2f", amount) + " transferred to your account.");
+    }
+
+    /**
+     * Handles the 'unfulfilled' status for a completed transaction.
+     *
+     * @param purchase The Purchase object being processed.
+     * @param user     The seller performing the action.
+     * @param buyerID  The ID of the buyer associated with the purchase.
+     * @return The outcome to report to the seller.
+     */
+    private OrderResult handleUnfulfilledStatus(Purchase purchase, User user, String buyerID) {
+        double amount = purchase.getTotalCost();
+
+        // Log the attempt to mark as unfulfilled
+        logger.info(() -> "Seller " + user.getUserID() + " is attempting to mark Purchase ID " + purchase.getPurchaseId() +
+                " for Buyer ID " + buyerID + " as unfulfilled.");
+
+        OrderResult released = reservations.release(purchase, buyerID);
+        if (!released.isSuccess()) {
+            return released;
+        }
+
+        logger.info(() -> "Seller " + user.getUserID() + " successfully marked Purchase ID " + purchase.getPurchaseId() +
                 " as unfulfilled and returned $" + String.format("%.2f", amount) + " to the customer.");
+        return OrderResult.success("Purchase ID " + purchase.getPurchaseId() + " for buyer ID " + buyerID + " marked as unfulfilled. $" +
+                String.format("%.2f", amount) + " returned to the customer.");
     }
 
     /**
@@ -884,36 +1583,214 @@ public class ClientHandler implements Runnable {
         // Normalize item name to maintain consistency (e.g., all lowercase)
         String normalizedItemName = itemName.toLowerCase();
 
-        synchronized (items) {
-            if (items.containsKey(normalizedItemName)) {
-                Item existingItem = items.get(normalizedItemName);
+        OrderResult result = engine.execute(normalizedItemName,
+                () -> restockItem(itemName, normalizedItemName, price, quantity, user));
 
-                // Check if the current seller is the owner of the item
-                if (!existingItem.getSellerID().equalsIgnoreCase(user.getUserID())) {
-                    out.println("You do not have permission to modify this item.");
-                    out.println("---END---");
-                    logger.warning("Seller " + user.getUserID() + " attempted to modify item not owned by them: " + itemName);
-                    return;
+        if (result.isSuccess()) {
+            // Persist data after modification
+            SOMSUtils.saveAllData(users, accounts, items, purchases);
+        }
+
+        // Send confirmation to the seller
+        out.println(result.getMessage());
+        out.println("---END---");
+    }
+
+    /**
+     * Creates the item or, for its owner, updates its price and adds stock.
+     * Uses a per-key insert rather than a lock on the whole items map.
+     *
+     * @param itemName           The item name as entered by the seller.
+     * @param normalizedItemName The lowercase item name.
+     * @param price              The price of the item.
+     * @param quantity           The quantity to add.
+     * @param user               The seller performing the action.
+     * @return The outcome of the update.
+     */
+    private OrderResult restockItem(String itemName, String normalizedItemName, double price, int quantity, User user) {
+        Item existingItem = items.get(normalizedItemName);
+        if (existingItem == null) {
+            // Create a new item with sellerID assigned to the current seller
+            Item newItem = new Item(itemName, price, quantity, user.getUserID());
+            existingItem = items.putIfAbsent(normalizedItemName, newItem);
+            if (existingItem == null) {
+                catalogEvents.itemChanged(newItem);
+                logger.info(() -> "Seller " + user.getUserID() + " added new item: " + itemName + " with price: $" + price + " and quantity: " + quantity);
+                return OrderResult.success("Item \"" + itemName + "\" added/updated successfully.");
+            }
+        }
+
+        // Check if the current seller is the owner of the item
+        if (!existingItem.getSellerID().equalsIgnoreCase(user.getUserID())) {
+            logger.warning("Seller " + user.getUserID() + " attempted to modify item not owned by them: " + itemName);
+            return OrderResult.failure("You do not have permission to modify this item.");
+        }
+
+        // Update price and quantity together for readers that lock the item; see reservePurchase
+        synchronized (existingItem) {
+            existingItem.setPrice(price);
+            existingItem.increaseQuantity(quantity);
+        }
+        catalogEvents.itemChanged(existingItem);
+        logger.info(() -> "Seller " + user.getUserID() + " updated item: " + itemName + " with price: $" + price + " and additional quantity: " + quantity);
+        return OrderResult.success("Item \"" + itemName + "\" added/updated successfully.");
+    }
+
+    /**
+     * Handles 'import [csv|jsonl]': reads the upload that follows and adds or updates every
+     * item in it. The upload is validated as a whole first; if any record is invalid or names
+     * another seller's item, nothing is imported. The data is saved once at the end.
+     *
+     * @param parts The split command parts.
+     * @param out   The PrintWriter to send responses to the client.
+     * @param in    The BufferedReader the upload is read from.
+     * @param user  The authenticated User object representing the seller.
+     * @throws IOException If an I/O error occurs while reading the upload.
+     */
+    private void handleImportCommand(String[] parts, PrintWriter out, BufferedReader in, User user) throws IOException {
+        BulkTransfer.Format format;
+        try {
+            format = BulkTransfer.Format.parse(parts.length < 2 ? "csv" : parts[1].trim());
+        } catch (IllegalArgumentException e) {
+            // The client may already be sending records; skip them to stay in step
+            BulkTransfer.readItems(in, BulkTransfer.Format.CSV);
+            out.println(e.getMessage());
+            out.println("---END---");
+            return;
+        }
+
+        BulkTransfer.Upload upload = BulkTransfer.readItems(in, format);
+        Map<String, BulkTransfer.ItemRecord> records = upload.getRecords();
+        List<String> errors = new ArrayList<>(upload.getErrors());
+        int errorCount = upload.getErrorCount();
+        for (Map.Entry<String, BulkTransfer.ItemRecord> entry : records.entrySet()) {
+            Item existing = items.get(entry.getKey());
+            if (existing != null && !existing.getSellerID().equalsIgnoreCase(user.getUserID())) {
+                errorCount++;
+                if (errors.size() < BulkTransfer.MAX_REPORTED_ERRORS) {
+                    errors.add("Item \"" + entry.getValue().getName() + "\": you do not have permission to modify this item.");
                 }
+            }
+        }
+        if (errorCount > 0) {
+            StringBuilder sb = new StringBuilder();
+            for (String error : errors) {
+                sb.append(error).append("\n");
+            }
+            if (errorCount > errors.size()) {
+                sb.append("... and ").append(errorCount - errors.size()).append(" more.\n");
+            }
+            sb.append(errorCount).append(" problems found. Nothing was imported.");
+            out.println(sb.toString());
+            out.println("---END---");
+            logger.warning("Seller " + user.getUserID() + " upload rejected with " + errorCount + " problems.");
+            return;
+        }
+        if (records.isEmpty()) {
+            out.println("The upload held no items.");
+            out.println("---END---");
+            return;
+        }
 
-                // Update price and quantity
-                existingItem.setPrice(price);
-                existingItem.increaseQuantity(quantity);
-                logger.info("Seller " + user.getUserID() + " updated item: " + itemName + " with price: $" + price + " and additional quantity: " + quantity);
-            } else {
-                // Create a new item with sellerID assigned to the current seller
-                Item newItem = new Item(itemName, price, quantity, user.getUserID());
-                items.put(normalizedItemName, newItem);
-                logger.info("Seller " + user.getUserID() + " added new item: " + itemName + " with price: $" + price + " and quantity: " + quantity);
+        int imported = 0;
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, BulkTransfer.ItemRecord> entry : records.entrySet()) {
+            BulkTransfer.ItemRecord record = entry.getValue();
+            OrderResult result = engine.execute(entry.getKey(), () -> restockItem(record.getName(), entry.getKey(),
+                    record.getPrice(), record.getQuantity(), user));
+            if (result.isSuccess()) {
+                imported++;
+            } else if (failures.size() < BulkTransfer.MAX_REPORTED_ERRORS) {
+                failures.add("Item \"" + record.getName() + "\": " + result.getMessage());
             }
         }
+        if (imported > 0) {
+            SOMSUtils.saveAllData(users, accounts, items, purchases);
+        }
 
-        // Persist data after modification
-        SOMSUtils.saveAllData(users, accounts, items, purchases);
+        StringBuilder sb = new StringBuilder();
+        for (String failure : failures) {
+            sb.append(failure).append("\n");
+        }
+        sb.append(imported).append(" of ").append(records.size()).append(" items added/updated successfully.");
+        out.println(sb.toString());
+        out.println("---END---");
+        if (logger.isLoggable(Level.INFO)) {
+            logger.info("Seller " + user.getUserID() + " imported " + imported + " of " + records.size() + " items from "
+                    + upload.getLineCount() + " lines.");
+        }
+    }
 
-        // Send confirmation to the seller
-        out.println("Item \"" + itemName + "\" added/updated successfully.");
+    /**
+     * Handles 'export [items|transactions] [csv|jsonl]': streams the seller's items or
+     * transactions, one record per line. Records are read without locking the items map or
+     * the seller's index, so orders keep flowing while an export runs.
+     *
+     * @param parts The split command parts.
+     * @param out   The PrintWriter to send responses to the client.
+     * @param user  The authenticated User object representing the seller.
+     */
+    private void handleExportCommand(String[] parts, PrintWriter out, User user) {
+        String[] exportParams = parts.length < 2 ? new String[0] : parts[1].split("\\s+");
+        if (exportParams.length < 1 || exportParams.length > 2
+                || (!exportParams[0].equalsIgnoreCase("items") && !exportParams[0].equalsIgnoreCase("transactions"))) {
+            out.println("Usage: export [items|transactions] [csv|jsonl]");
+            out.println("---END---");
+            return;
+        }
+        BulkTransfer.Format format;
+        try {
+            format = BulkTransfer.Format.parse(exportParams.length < 2 ? "csv" : exportParams[1]);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println("---END---");
+            return;
+        }
+
+        boolean exportItems = exportParams[0].equalsIgnoreCase("items");
+        String header = exportItems ? BulkTransfer.itemHeader(format) : BulkTransfer.purchaseHeader(format);
+        StringBuilder chunk = new StringBuilder();
+        if (header != null) {
+            chunk.append(header).append(System.lineSeparator());
+        }
+        int count = 0;
+        if (exportItems) {
+            for (Item item : items.values()) {
+                if (user.getUserID().equalsIgnoreCase(item.getSellerID())) {
+                    chunk.append(BulkTransfer.formatItem(item, format)).append(System.lineSeparator());
+                    count++;
+                    flushChunk(out, chunk);
+                }
+            }
+        } else {
+            for (Purchase purchase : sellerIndex.getPurchases(user.getUserID())) {
+                if (!isSellerTransaction(purchase, user.getUserID())) {
+                    continue;
+                }
+                chunk.append(BulkTransfer.formatPurchase(purchase, format)).append(System.lineSeparator());
+                count++;
+                flushChunk(out, chunk);
+            }
+        }
+        out.print(chunk);
         out.println("---END---");
+        if (logger.isLoggable(Level.INFO)) {
+            logger.info("Seller " + user.getUserID() + " exported " + count + " " + exportParams[0].toLowerCase() + ".");
+        }
+    }
+
+    /**
+     * Hands a chunk of export lines to the writer once it is large enough, so an export is
+     * sent in pieces rather than built up in memory.
+     *
+     * @param out   The PrintWriter to send responses to the client.
+     * @param chunk The lines not yet written; cleared when written.
+     */
+    private void flushChunk(PrintWriter out, StringBuilder chunk) {
+        if (chunk.length() >= 64 * 1024) {
+            out.print(chunk);
+            chunk.setLength(0);
+        }
     }
 
     /**
@@ -925,16 +1802,33 @@ public class ClientHandler implements Runnable {
      */
     private void handleViewCommand(String[] parts, PrintWriter out, User user) {
         if (parts.length < 2) {
-            out.println("Usage: view [transactions]");
+            out.println("Usage: view [transactions|pending|stats|summary|activity|credits|metrics]");
             out.println("---END---");
             return;
         }
 
-        String subAction = parts[1].toLowerCase();
+        String[] viewParams = parts[1].split("\\s+", 2);
+        String subAction = viewParams[0].toLowerCase();
         if (subAction.equals("transactions")) {
-            viewTransactionHistory(out, user);
+            if (viewParams.length < 2) {
+                viewTransactionHistory(out, user);
+            } else {
+                handleHistoryPageCommand(viewParams[1], out, user, true);
+            }
+        } else if (subAction.equals("pending")) {
+            viewPendingOrders(out, user);
+        } else if (subAction.equals("stats")) {
+            viewSellerStats(out, user, viewParams.length < 2 ? "" : viewParams[1]);
+        } else if (subAction.equals("summary")) {
+            viewSellerSummary(out, user);
+        } else if (subAction.equals("credits")) {
+            viewSellerCredits(out, user);
+        } else if (subAction.equals("activity")) {
+            viewSalesActivity(out, user, viewParams.length < 2 ? "" : viewParams[1]);
+        } else if (subAction.equals("metrics")) {
+            viewMetrics(out, user);
         } else {
-            out.println("Unknown view command. Usage: view transactions");
+            out.println("Unknown view command. Usage: view [transactions|pending|stats|summary|activity|credits|metrics]");
             out.println("---END---");
             logger.warning("Unknown sub-action for view command from seller: " + user.getUserID() + " - " + subAction);
         }
@@ -949,7 +1843,7 @@ public class ClientHandler implements Runnable {
     private void handleExitCommand(PrintWriter out, User user) {
         out.println("Goodbye!");
         out.println("---END---");
-        logger.info("Seller " + user.getUserID() + " has exited the application.");
+        logger.info(() -> "Seller " + user.getUserID() + " has exited the application.");
     }
 
     /**
@@ -973,30 +1867,15 @@ public class ClientHandler implements Runnable {
         String sellerID = seller.getUserID();
         StringBuilder sb = new StringBuilder();
         sb.append("Transaction History:\n");
-        sb.append(String.format("%-5s %-20s %-10s %-20s %-15s %-10s %-15s\n",
-                "ID", "Item Name", "Quantity", "Date", "Buyer", "Cost($)", "Status"));
-        sb.append("----------------------------------------------------------------------------------------------\n");
+        appendTransactionHeader(sb);
 
         boolean hasTransactions = false;
 
-        for (Map.Entry<String, Map<Integer, Purchase>> entry : purchases.entrySet()) {
-            String buyerID = entry.getKey();
-            for (Map.Entry<Integer, Purchase> purchaseEntry : entry.getValue().entrySet()) {
-                Purchase purchase = purchaseEntry.getValue();
-                String purchaseSellerID = purchase.getSellerID();
-
-                // Add null check for sellerID
-                if (purchaseSellerID != null && purchaseSellerID.equalsIgnoreCase(sellerID)) {
-                    sb.append(String.format("%-5d %-20s %-10d %-20s %-15s %-10.2f %-15s\n",
-                            purchase.getPurchaseId(),
-                            purchase.getItemName(),
-                            purchase.getQuantity(),
-                            purchase.getPurchaseDate().toString(),
-                            buyerID,
-                            purchase.getTotalCost(),
-                            purchase.getStatus()));
-                    hasTransactions = true;
-                }
+        // The index holds every purchase made from this seller, oldest first
+        for (Purchase purchase : sellerIndex.getPurchases(sellerID)) {
+            if (isSellerTransaction(purchase, sellerID)) {
+                appendTransactionRow(sb, purchase);
+                hasTransactions = true;
             }
         }
 
@@ -1006,125 +1885,313 @@ public class ClientHandler implements Runnable {
 
         out.println(sb.toString());
         out.println("---END---");
-        logger.info("Seller " + seller.getUserID() + " viewed transaction history.");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed transaction history.");
     }
 
-
-    // Top 5 seller functions
+    /**
+     * Tells whether a purchase from the seller index appears in the seller's transaction views.
+     * Purchases marked unfulfilled no longer carry the seller's ID and are left out.
+     *
+     * @param purchase The purchase.
+     * @param sellerID The ID of the seller.
+     * @return True if the purchase is shown to the seller.
+     */
+    private static boolean isSellerTransaction(Purchase purchase, String sellerID) {
+        String purchaseSellerID = purchase.getSellerID();
+        return purchaseSellerID != null && purchaseSellerID.equalsIgnoreCase(sellerID);
+    }
 
     /**
-     * Retrieves the top 5 sellers based on the number of fulfilled transactions.
+     * Displays the seller's pending orders, oldest first.
      *
-     * @return A list of TopSeller objects representing the top 5 sellers.
+     * @param out    The PrintWriter to send responses to the client.
+     * @param seller The authenticated Seller User object.
      */
-    private List<TopSeller> getTopSellers() {
-        Map<String, Integer> sellerTransactionCount = new HashMap<>();
-
-        // Iterate through all purchases to count fulfilled transactions per seller
-        for (Map<Integer, Purchase> userPurchases : purchases.values()) {
-            for (Purchase purchase : userPurchases.values()) {
-                // Check if the purchase status is 'fulfilled' (case-insensitive)
-                if ("fulfilled".equalsIgnoreCase(purchase.getStatus())) {
-                    String sellerID = purchase.getSellerID();
-
-                    if (sellerID != null) {
-                        // Normalize sellerID to lowercase to match users map keys
-                        String normalizedSellerID = sellerID.toLowerCase();
-
-                        // Increment the transaction count for the seller
-                        sellerTransactionCount.put(normalizedSellerID,
-                                sellerTransactionCount.getOrDefault(normalizedSellerID, 0) + 1);
-                    }
-                }
-            }
+    private void viewPendingOrders(PrintWriter out, User seller) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Pending Orders:\n");
+        appendTransactionHeader(sb);
+
+        boolean hasPending = false;
+        for (Purchase purchase : sellerIndex.getPendingPurchases(seller.getUserID())) {
+            appendTransactionRow(sb, purchase);
+            hasPending = true;
         }
 
-        logger.info("Seller Transaction Counts: " + sellerTransactionCount);
+        if (!hasPending) {
+            sb.append("No pending orders found.");
+        }
 
-        // Create a list of TopSeller objects
-        List<TopSeller> topSellersList = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : sellerTransactionCount.entrySet()) {
-            String sellerID = entry.getKey();
-            int transactionCount = entry.getValue();
+        out.println(sb.toString());
+        out.println("---END---");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed pending orders.");
+    }
 
-            // Retrieve the seller from the users map using the normalized sellerID
-            User seller = users.get(sellerID);
+    /**
+     * Displays the seller's settled balance together with the credits still waiting in the
+     * settlement ledger.
+     *
+     * @param out    The PrintWriter to send responses to the client.
+     * @param seller The authenticated Seller User object.
+     */
+    private void viewSellerCredits(PrintWriter out, User seller) {
+        Account account = accounts.get(seller.getAccountNumber());
+        if (account == null) {
+            out.println("Account not found.");
+            out.println("---END---");
+            logger.severe("Account not found for userID: " + seller.getUserID());
+            return;
+        }
+        SettlementLedger.Balance credits = settlementLedger.getBalance(account);
+        long unsettledCents = credits.getUnsettledCents();
+        double balance = credits.getSettled();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Settled balance: $%.2f\n", balance));
+        sb.append(String.format("Unsettled credits: $%.2f\n", unsettledCents / 100.0));
+        sb.append(String.format("Your current balance: $%.2f", balance + unsettledCents / 100.0));
+        out.println(sb.toString());
+        out.println("---END---");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed credits. Balance: $" + balance
+                + ", unsettled: $" + String.format("%.2f", unsettledCents / 100.0));
+    }
 
-            if (seller != null && seller.getName() != null) {
-                topSellersList.add(new TopSeller(sellerID, seller.getName(), transactionCount));
-            } else {
-                logger.warning("Seller with ID '" + sellerID + "' not found in users map or has no name.");
-            }
+    /**
+     * Displays the seller's running order totals.
+     *
+     * @param out    The PrintWriter to send responses to the client.
+     * @param seller The authenticated Seller User object.
+     */
+    private void viewSellerSummary(PrintWriter out, User seller) {
+        PurchaseAggregates.Totals totals = purchaseAggregates.getSellerTotals(seller.getUserID());
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sales Summary:\n");
+        sb.append(String.format("Orders received: %d\n", totals.getOrders()));
+        sb.append(String.format("Pending: %d ($%.2f awaiting completion)\n", totals.getPendingCount(), totals.getPendingCents() / 100.0));
+        sb.append(String.format("Fulfilled: %d ($%.2f revenue)\n", totals.getFulfilledCount(), totals.getFulfilledCents() / 100.0));
+        sb.append(String.format("Unfulfilled: %d ($%.2f refunded)", totals.getUnfulfilledCount(), totals.getUnfulfilledCents() / 100.0));
+        out.println(sb.toString());
+        out.println("---END---");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed sales summary.");
+    }
+
+    /**
+     * Displays aggregate sales figures for the seller over a date range.
+     *
+     * @param out    The PrintWriter to send responses to the client.
+     * @param seller The authenticated Seller User object.
+     * @param args   The range options after 'stats'; may be empty.
+     */
+    private void viewSellerStats(PrintWriter out, User seller, String args) {
+        StatsRange range;
+        try {
+            range = StatsRange.parse(args, LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println("Usage: view stats " + StatsRange.USAGE_OPTIONS);
+            out.println("---END---");
+            return;
         }
 
-        // Sort the list in descending order of transaction count
-        topSellersList.sort((s1, s2) -> Integer.compare(s2.getTransactionCount(), s1.getTransactionCount()));
+        SellerStats stats = sellerStatsCache.get(seller.getUserID(), range);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sales Statistics (").append(range.describe()).append("):\n");
+        sb.append(String.format("Orders: %d (pending %d, fulfilled %d, unfulfilled %d)\n",
+                stats.getOrderCount(), stats.getPendingCount(), stats.getFulfilledCount(), stats.getUnfulfilledCount()));
+        double rate = stats.getFulfilmentRate();
+        sb.append("Fulfilment rate: ").append(Double.isNaN(rate) ? "n/a" : String.format("%.1f%%", rate * 100)).append("\n");
+        sb.append(String.format("Revenue: $%.2f\n", stats.getRevenueCents() / 100.0));
+        sb.append(String.format("Average order: $%.2f (%.1f units)\n", stats.getAverageOrderValue(), stats.getAverageOrderQuantity()));
+
+        sb.append("\nRevenue by Item:\n");
+        sb.append(String.format("%-20s %-10s %-10s %-12s\n", "Item Name", "Orders", "Quantity", "Revenue($)"));
+        sb.append("------------------------------------------------------\n");
+        for (Map.Entry<String, SellerStats.ItemTotals> entry : stats.getRevenueByItem().entrySet()) {
+            SellerStats.ItemTotals totals = entry.getValue();
+            sb.append(String.format("%-20s %-10d %-10d %-12.2f\n",
+                    entry.getKey(), totals.getOrders(), totals.getQuantity(), totals.getRevenueCents() / 100.0));
+        }
 
-        logger.info("Sorted Top Sellers: " + topSellersList.stream()
-                .map(s -> s.getSellerName() + ": " + s.getTransactionCount())
-                .collect(Collectors.joining(", ")));
+        sb.append("\nRevenue by Day:\n");
+        sb.append(String.format("%-12s %-10s %-10s %-12s\n", "Date", "Orders", "Quantity", "Revenue($)"));
+        sb.append("----------------------------------------------\n");
+        for (Map.Entry<LocalDate, SellerStats.ItemTotals> entry : stats.getRevenueByDay().entrySet()) {
+            SellerStats.ItemTotals totals = entry.getValue();
+            sb.append(String.format("%-12s %-10d %-10d %-12.2f\n",
+                    entry.getKey(), totals.getOrders(), totals.getQuantity(), totals.getRevenueCents() / 100.0));
+        }
+        if (stats.getFulfilledCount() == 0) {
+            sb.append("No fulfilled orders in this range.");
+        }
 
-        // Return the top 5 sellers or fewer if not enough sellers exist
-        List<TopSeller> top5Sellers = topSellersList.stream().limit(5).collect(Collectors.toList());
-        logger.info("Final Top 5 Sellers: " + top5Sellers.stream()
-                .map(s -> s.getSellerName() + ": " + s.getTransactionCount())
-                .collect(Collectors.joining(", ")));
-        return top5Sellers;
+        out.println(sb.toString());
+        out.println("---END---");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed stats for " + range.describe() + ".");
     }
 
     /**
-     * Retrieves and displays the top 5 sellers based on fulfilled transactions.
+     * Displays shop-wide sales per minute over the last hour or per hour over the last day,
+     * overall or for one item.
      *
-     * @param out The PrintWriter to send responses to the client.
+     * @param out    The PrintWriter to send responses to the client.
+     * @param seller The authenticated Seller User object.
+     * @param args   '[minutes|hours] [itemName]'; may be empty.
      */
-    private void displayTopSellers(PrintWriter out) {
-        List<TopSeller> topSellers = getTopSellers();
-
-        if (!topSellers.isEmpty()) {
-            out.println("Top 5 Sellers by Number of Fulfilled Transactions:");
-            int rank = 1;
-            for (TopSeller seller : topSellers) {
-                out.println(rank + ". " + seller.getSellerName() + " (ID: " + seller.getSellerID() + ") - " + seller.getTransactionCount() + " transactions");
-                rank++;
+    private void viewSalesActivity(PrintWriter out, User seller, String args) {
+        SalesRollups.Resolution resolution = SalesRollups.Resolution.MINUTE;
+        String itemName = args.trim();
+        String[] tokens = itemName.split("\\s+", 2);
+        if (tokens[0].equalsIgnoreCase("minutes") || tokens[0].equalsIgnoreCase("hours")) {
+            if (tokens[0].equalsIgnoreCase("hours")) {
+                resolution = SalesRollups.Resolution.HOUR;
             }
-        } else {
-            out.println("No fulfilled transactions available to display top sellers.");
+            itemName = tokens.length < 2 ? "" : tokens[1].trim();
+        }
+        if (!itemName.isEmpty() && !items.containsKey(itemName.toLowerCase())) {
+            out.println("Item '" + itemName + "' not found.");
+            out.println("---END---");
+            return;
         }
 
-        out.println("---END---"); // Ensure the delimiter is sent
+        SalesRollups.Window window = salesRollups.window(resolution, itemName.isEmpty() ? null : itemName);
+        boolean byMinute = resolution == SalesRollups.Resolution.MINUTE;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sales Activity (").append(itemName.isEmpty() ? "all items" : itemName.toLowerCase())
+                .append(byMinute ? ", last hour by minute" : ", last 24 hours by hour").append("):\n");
+        sb.append(String.format("%-17s %-8s %-12s %-10s %-12s %-12s %-12s %-12s\n", byMinute ? "Minute" : "Hour",
+                "Orders", "Ordered($)", "Fulfilled", "Revenue($)", "Unfulfilled", "AvgWait(s)", "MaxWait(s)"));
+        sb.append("-----------------------------------------------------------------------------------------------------\n");
+        for (SalesRollups.Rollup rollup : window.getRollups()) {
+            if (!rollup.isEmpty()) {
+                appendRollupRow(sb, rollup.getStart().toString(), rollup);
+            }
+        }
+        appendRollupRow(sb, "Total", window.getTotal());
+        out.println(sb.toString());
+        out.println("---END---");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed sales activity.");
+    }
+
+    /**
+     * Displays the server's command latencies, save times and order outcomes.
+     *
+     * @param out    The PrintWriter to send responses to the client.
+     * @param seller The authenticated User object representing the seller.
+     */
+    private void viewMetrics(PrintWriter out, User seller) {
+        out.println(metrics.dump());
+        out.println("---END---");
+        logger.info(() -> "Seller " + seller.getUserID() + " viewed server metrics.");
     }
 
     /**
-     * Represents a top seller with their ID, name, and transaction count.
+     * Appends one row of the sales activity table.
+     *
+     * @param sb     The StringBuilder to append to.
+     * @param label  The period label.
+     * @param rollup The figures for the period.
      */
-    private static class TopSeller {
-        private final String sellerID;
-        private final String sellerName;
-        private final int transactionCount;
+    private void appendRollupRow(StringBuilder sb, String label, SalesRollups.Rollup rollup) {
+        double average = rollup.getAverageLatencySeconds();
+        double max = rollup.getMaxLatencySeconds();
+        sb.append(String.format("%-17s %-8d %-12.2f %-10d %-12.2f %-12d %-12s %-12s\n", label,
+                rollup.getOrders(), rollup.getOrderedCents() / 100.0, rollup.getFulfilled(),
+                rollup.getRevenueCents() / 100.0, rollup.getUnfulfilled(),
+                Double.isNaN(average) ? "-" : String.format("%.1f", average),
+                Double.isNaN(max) ? "-" : String.format("%.1f", max)));
+    }
 
-        /**
-         * Constructs a new TopSeller.
-         *
-         * @param sellerID         The ID of the seller.
-         * @param sellerName       The name of the seller.
-         * @param transactionCount The number of transactions completed by the seller.
-         */
-        public TopSeller(String sellerID, String sellerName, int transactionCount) {
-            this.sellerID = sellerID;
-            this.sellerName = sellerName;
-            this.transactionCount = transactionCount;
-        }
+    /**
+     * Appends the column header used by the seller's transaction tables.
+     *
+     * @param sb The StringBuilder to append to.
+     */
+    private void appendTransactionHeader(StringBuilder sb) {
+        sb.append(String.format("%-5s %-20s %-10s %-20s %-15s %-10s %-15s\n",
+                "ID", "Item Name", "Quantity", "Date", "Buyer", "Cost($)", "Status"));
+        sb.append("----------------------------------------------------------------------------------------------\n");
+    }
+
+    /**
+     * Appends one purchase as a row of the seller's transaction tables.
+     *
+     * @param sb       The StringBuilder to append to.
+     * @param purchase The purchase to append.
+     */
+    private void appendTransactionRow(StringBuilder sb, Purchase purchase) {
+        sb.append(String.format("%-5d %-20s %-10d %-20s %-15s %-10.2f %-15s\n",
+                purchase.getPurchaseId(),
+                purchase.getItemName(),
+                purchase.getQuantity(),
+                purchase.getPurchaseDate().toString(),
+                purchase.getUserID(),
+                purchase.getTotalCost(),
+                purchase.getStatus()));
+    }
 
-        public String getSellerID() {
-            return sellerID;
+
+    // Top 5 seller functions
+
+    /**
+     * Retrieves and displays the top 5 sellers for the given ranking.
+     * Reads the maintained leaderboard, so the cost does not grow with order history.
+     *
+     * @param out     The PrintWriter to send responses to the client.
+     * @param ranking The ranking to display.
+     */
+    private void displayTopSellers(PrintWriter out, SellerLeaderboard.Ranking ranking) {
+        StringBuilder sb = new StringBuilder();
+        int rank = 1;
+        // Retrieve each seller from the users map using the normalized sellerID
+        List<SellerLeaderboard.Standing> top = sellerLeaderboard.top(ranking, 5, standing -> {
+            User seller = users.get(standing.getSellerID());
+            return seller != null && seller.getName() != null
+                    && (ranking != SellerLeaderboard.Ranking.RECENT || standing.getRecentCount() > 0);
+        });
+        for (SellerLeaderboard.Standing standing : top) {
+            User seller = users.get(standing.getSellerID());
+
+            sb.append(rank).append(". ").append(seller.getName()).append(" (ID: ").append(standing.getSellerID()).append(") - ");
+            switch (ranking) {
+                case REVENUE:
+                    sb.append("$").append(String.format("%.2f", standing.getRevenue())).append(" revenue");
+                    break;
+                case RECENT:
+                    sb.append(standing.getRecentCount()).append(" transactions in the last ")
+                            .append(sellerLeaderboard.getRecentWindow().toDays()).append(" days");
+                    break;
+                default:
+                    sb.append(standing.getFulfilledCount()).append(" transactions");
+                    break;
+            }
+            sb.append("\n");
+            rank++;
         }
 
-        public String getSellerName() {
-            return sellerName;
+        if (rank > 1) {
+            out.println(headingFor(ranking));
+            out.print(sb);
+        } else {
+            out.println("No fulfilled transactions available to display top sellers.");
         }
 
-        public int getTransactionCount() {
-            return transactionCount;
+        out.println("---END---"); // Ensure the delimiter is sent
+    }
+
+    /**
+     * Returns the heading printed above a top sellers list.
+     *
+     * @param ranking The ranking being displayed.
+     * @return The heading text.
+     */
+    private String headingFor(SellerLeaderboard.Ranking ranking) {
+        switch (ranking) {
+            case REVENUE:
+                return "Top 5 Sellers by Fulfilled Revenue:";
+            case RECENT:
+                return "Top 5 Sellers by Fulfilled Transactions in the Last "
+                        + sellerLeaderboard.getRecentWindow().toDays() + " Days:";
+            default:
+                return "Top 5 Sellers by Number of Fulfilled Transactions:";
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+package SOMSServerJava;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.function.Predicate;
+
+/**
+ * HistoryQuery describes one page of a paginated purchase history or transaction view.
+ * <p>
+ * Syntax: {@code page [size <n>] [status pending|fulfilled|unfulfilled] [from <yyyy-MM-dd>]
+ * [to <yyyy-MM-dd>] [cursor <token>]}
+ * <p>
+ * Pages are read straight from a date-ordered index. The cursor is an opaque token naming the
+ * last purchase of the previous page, so the next page starts just after it without counting
+ * or materializing the rows before it. Cursors come from clients, so they are decoded into a
+ * plain key and never into a Purchase, whose names would be interned in {@link Purchase#NAMES}.
+ */
+public class HistoryQuery {
+    public static final String USAGE_OPTIONS = "[size <n>] [status pending|fulfilled|unfulfilled] "
+            + "[from <yyyy-MM-dd>] [to <yyyy-MM-dd>] [cursor <token>]";
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private String status;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Cursor after;
+
+    /**
+     * Parses the options that follow the 'page' keyword.
+     *
+     * @param args The option text; may be empty.
+     * @return The parsed query.
+     * @throws IllegalArgumentException if the options are malformed.
+     */
+    public static HistoryQuery parse(String args) {
+        HistoryQuery query = new HistoryQuery();
+        String trimmed = args == null ? "" : args.trim();
+        if (trimmed.isEmpty()) {
+            return query;
+        }
+
+        String[] tokens = trimmed.split("\\s+");
+        if (tokens.length % 2 != 0) {
+            throw new IllegalArgumentException("Each option needs a value: " + USAGE_OPTIONS);
+        }
+        for (int i = 0; i < tokens.length; i += 2) {
+            String option = tokens[i].toLowerCase();
+            String value = tokens[i + 1];
+            switch (option) {
+                case "size":
+                    try {
+                        query.pageSize = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        query.pageSize = -1;
+                    }
+                    if (query.pageSize <= 0 || query.pageSize > MAX_PAGE_SIZE) {
+                        throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+                    }
+                    break;
+                case "status":
+                    String status = value.toLowerCase();
+                    if (!status.equals("pending") && !status.equals("fulfilled") && !status.equals("unfulfilled")) {
+                        throw new IllegalArgumentException("Invalid status. Use 'pending', 'fulfilled' or 'unfulfilled'.");
+                    }
+                    query.status = status;
+                    break;
+                case "from":
+                    query.from = parseDate(value).atStartOfDay();
+                    break;
+                case "to":
+                    query.to = parseDate(value).plusDays(1).atStartOfDay();
+                    break;
+                case "cursor":
+                    query.after = decodeCursor(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option '" + option + "'. Options: " + USAGE_OPTIONS);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Reads one page from a history ordered by {@link Purchase#BY_DATE}.
+     *
+     * @param history The date-ordered purchases to page through.
+     * @return Up to pageSize + 1 purchases; the extra one only signals that another page exists.
+     */
+    public List<Purchase> fetchPage(NavigableSet<Purchase> history) {
+        return fetchPage(history, purchase -> true);
+    }
+
+    /**
+     * Reads one page from a history ordered by {@link Purchase#BY_DATE}, skipping purchases the
+     * view does not show.
+     *
+     * @param history The date-ordered purchases to page through.
+     * @param visible Which purchases the view shows; the others neither fill the page nor
+     *                end it.
+     * @return Up to pageSize + 1 purchases; the extra one only signals that another page exists.
+     */
+    public List<Purchase> fetchPage(NavigableSet<Purchase> history, Predicate<Purchase> visible) {
+        NavigableSet<Purchase> window;
+        if (after != null) {
+            window = history.tailSet(Purchase.probeAt(after.date), true);
+        } else if (from != null) {
+            window = history.tailSet(Purchase.probeAt(from), true);
+        } else {
+            window = history;
+        }
+
+        List<Purchase> page = new ArrayList<>(pageSize + 1);
+        for (Purchase purchase : window) {
+            if (after != null && !after.precedes(purchase)) {
+                continue;
+            }
+            if (to != null && !purchase.getPurchaseDate().isBefore(to)) {
+                break;
+            }
+            if (from != null && purchase.getPurchaseDate().isBefore(from)) {
+                continue;
+            }
+            if (status != null && !status.equalsIgnoreCase(purchase.getStatus())) {
+                continue;
+            }
+            if (!visible.test(purchase)) {
+                continue;
+            }
+            page.add(purchase);
+            if (page.size() > pageSize) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Builds the cursor that resumes a listing just after the given purchase.
+     * Filters are not part of the cursor and must be repeated with it.
+     *
+     * @param last The last purchase shown on the current page.
+     * @return An opaque cursor token.
+     */
+    public static String encodeCursor(Purchase last) {
+        String raw = last.getPurchaseDate() + "|" + last.getPurchaseId() + "|" + last.getUserID();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] fields = raw.split("\\|", 3);
+            return new Cursor(LocalDateTime.parse(fields[0]), fields[2], Integer.parseInt(fields[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + value + "'. Use yyyy-MM-dd.");
+        }
+    }
+
+    /**
+     * The position a cursor names, compared the way {@link Purchase#BY_DATE} orders purchases.
+     */
+    private static final class Cursor {
+        final LocalDateTime date;
+        final long time;
+        final String userID;
+        final int purchaseId;
+
+        Cursor(LocalDateTime date, String userID, int purchaseId) {
+            this.date = date;
+            // The probe's buyer is the constant "", so nothing from the client is interned
+            this.time = Purchase.probeAt(date).getPurchaseTime();
+            this.userID = userID;
+            this.purchaseId = purchaseId;
+        }
+
+        /**
+         * Tells whether a purchase sorts after this position.
+         */
+        boolean precedes(Purchase purchase) {
+            int byTime = Long.compare(purchase.getPurchaseTime(), time);
+            if (byTime != 0) {
+                return byTime > 0;
+            }
+            int byUser = purchase.getUserID().compareTo(userID);
+            if (byUser != 0) {
+                return byUser > 0;
+            }
+            return purchase.getPurchaseId() > purchaseId;
+        }
+    }
+}
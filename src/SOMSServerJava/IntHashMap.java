@@ -0,0 +1,314 @@
+package SOMSServerJava;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * IntHashMap is a concurrent map from int keys to values, using open addressing over a
+ * primitive key array. Lookups through {@link #get(int)} neither box the key nor follow a
+ * per-entry node, and an entry costs one int plus one reference slot.
+ * <p>
+ * Reads are lock-free; writes are serialized. Null values are not allowed. It is also a
+ * {@code Map<Integer, V>}, so code and JSON persistence written against the boxed map keep
+ * working; iteration is weakly consistent, as with ConcurrentHashMap.
+ */
+public class IntHashMap<V> extends AbstractMap<Integer, V> {
+    private static final int INITIAL_CAPACITY = 16;
+    // Marks a removed entry; probing continues past it
+    private static final Object REMOVED = new Object();
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size; // Written under this
+    private int used; // Occupied slots including removed ones, guarded by this
+
+    /**
+     * Constructs a new, empty IntHashMap.
+     */
+    public IntHashMap() {
+    }
+
+    /**
+     * Constructs a new IntHashMap holding the entries of another map.
+     *
+     * @param map The map to copy.
+     */
+    public IntHashMap(Map<Integer, ? extends V> map) {
+        putAll(map);
+    }
+
+    /**
+     * Looks up a key in any int-keyed map, without boxing when it is an IntHashMap.
+     *
+     * @param map The map to search.
+     * @param key The key.
+     * @param <V> The type of the values in the map.
+     * @return The value, or null if the key is absent.
+     */
+    public static <V> V lookup(Map<Integer, V> map, int key) {
+        if (map instanceof IntHashMap) {
+            return ((IntHashMap<V>) map).get(key);
+        }
+        return map.get(key);
+    }
+
+    /**
+     * Returns the value for a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is absent.
+     */
+    public V get(int key) {
+        Table current = table;
+        int mask = current.keys.length - 1;
+        for (int slot = indexFor(key, mask); ; slot = (slot + 1) & mask) {
+            // Reading the value first makes the key written before it visible
+            Object value = current.values.get(slot);
+            if (value == null) {
+                return null;
+            }
+            if (current.keys[slot] == key) {
+                return value == REMOVED ? null : cast(value);
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key   The key.
+     * @param value The value; must not be null.
+     * @return The previous value, or null if there was none.
+     */
+    public synchronized V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("IntHashMap does not allow null values.");
+        }
+        Table current = table;
+        int slot = slotFor(current, key);
+        Object previous = current.values.get(slot);
+        if (previous == null) {
+            if (used + 1 > current.keys.length * 3 / 4) {
+                resize();
+                return put(key, value);
+            }
+            current.keys[slot] = key;
+            used++;
+        }
+        current.values.set(slot, value);
+        if (previous == null || previous == REMOVED) {
+            size++;
+            return null;
+        }
+        return cast(previous);
+    }
+
+    /**
+     * Associates a value with a key unless it already has one.
+     *
+     * @param key   The key.
+     * @param value The value; must not be null.
+     * @return The existing value, or null if the value was added.
+     */
+    public synchronized V putIfAbsent(int key, V value) {
+        V existing = get(key);
+        return existing != null ? existing : put(key, value);
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key.
+     * @return The removed value, or null if the key was absent.
+     */
+    public synchronized V remove(int key) {
+        Table current = table;
+        int slot = slotFor(current, key);
+        Object previous = current.values.get(slot);
+        if (previous == null || previous == REMOVED) {
+            return null;
+        }
+        current.values.set(slot, REMOVED);
+        size--;
+        return cast(previous);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V putIfAbsent(Integer key, V value) {
+        return putIfAbsent(key.intValue(), value);
+    }
+
+    @Override
+    public synchronized V computeIfAbsent(Integer key, Function<? super Integer, ? extends V> mappingFunction) {
+        V existing = get(key.intValue());
+        if (existing != null) {
+            return existing;
+        }
+        V value = mappingFunction.apply(key);
+        if (value != null) {
+            put(key.intValue(), value);
+        }
+        return value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+        used = 0;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new EntryIterator(table);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it would be added.
+     */
+    private static int slotFor(Table current, int key) {
+        int mask = current.keys.length - 1;
+        for (int slot = indexFor(key, mask); ; slot = (slot + 1) & mask) {
+            if (current.values.get(slot) == null || current.keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void resize() {
+        Table current = table;
+        // Grow only if live entries fill the table; otherwise rebuilding just drops removed slots
+        int capacity = size + 1 > current.keys.length / 2 ? current.keys.length * 2 : current.keys.length;
+        Table resized = new Table(capacity);
+        int count = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            Object value = current.values.get(slot);
+            if (value != null && value != REMOVED) {
+                int target = slotFor(resized, current.keys[slot]);
+                resized.keys[target] = current.keys[slot];
+                resized.values.set(target, value);
+                count++;
+            }
+        }
+        used = count;
+        table = resized;
+    }
+
+    static int indexFor(int key, int mask) {
+        // Same spreading as ConcurrentHashMap: sequential keys such as account numbers and
+        // purchase IDs land in consecutive slots, and iterate (and save) in the same order
+        return (key ^ (key >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * The key and value arrays of one table generation.
+     */
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    /**
+     * Iterates one table generation, skipping empty and removed slots.
+     */
+    private final class EntryIterator implements Iterator<Entry<Integer, V>> {
+        private final Table current;
+        private int slot = -1;
+        private Entry<Integer, V> next;
+        private Entry<Integer, V> last;
+
+        EntryIterator(Table current) {
+            this.current = current;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<Integer, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            IntHashMap.this.remove(last.getKey().intValue());
+            last = null;
+        }
+
+        private void advance() {
+            next = null;
+            while (++slot < current.keys.length) {
+                Object value = current.values.get(slot);
+                if (value != null && value != REMOVED) {
+                    next = new SimpleImmutableEntry<>(current.keys[slot], IntHashMap.<V>cast(value));
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package SOMSServerJava;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IntHashMapBenchmark compares a ConcurrentHashMap&lt;Integer, Account&gt; with an
+ * IntHashMap&lt;Account&gt; for lookup throughput and for the heap used by the map itself
+ * (the Account objects are shared and not counted).
+ * <p>
+ * Run with, e.g.:
+ * java -Xmx1g -cp "out:libs/gson-2.11.0.jar" SOMSServerJava.IntHashMapBenchmark 1000000
+ */
+public class IntHashMapBenchmark {
+    private static final int ACCOUNTS = 1_000_000;
+    private static final int FIRST_ACCOUNT = 1001;
+    private static final int LOOKUPS = 20_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : ACCOUNTS;
+        Account[] accounts = new Account[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = new Account(FIRST_ACCOUNT + i, 100.0);
+        }
+        int[] keys = new int[LOOKUPS];
+        Random random = new Random(42);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = FIRST_ACCOUNT + random.nextInt(count);
+        }
+
+        long baseline = usedHeap();
+        Map<Integer, Account> boxed = new ConcurrentHashMap<>();
+        for (Account account : accounts) {
+            boxed.put(account.getAccountNumber(), account);
+        }
+        long boxedBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        IntHashMap<Account> primitive = new IntHashMap<>();
+        for (Account account : accounts) {
+            primitive.put(account.getAccountNumber(), account);
+        }
+        long primitiveBytes = usedHeap() - baseline;
+
+        long boxedNanos = Long.MAX_VALUE;
+        long primitiveNanos = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long begin = System.nanoTime();
+            for (int key : keys) {
+                checksum += boxed.get(key).getAccountNumber();
+            }
+            boxedNanos = Math.min(boxedNanos, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            for (int key : keys) {
+                checksum -= primitive.get(key).getAccountNumber();
+            }
+            primitiveNanos = Math.min(primitiveNanos, System.nanoTime() - begin);
+        }
+        if (checksum != 0) {
+            throw new IllegalStateException("Maps disagree.");
+        }
+
+        System.out.println("Account lookups: " + count + " accounts, " + LOOKUPS + " random lookups (best of " + ROUNDS + ")");
+        System.out.println(String.format("%-28s %14s %16s", "Map", "Lookups/sec (M)", "Bytes/entry"));
+        System.out.println("------------------------------------------------------------");
+        print("ConcurrentHashMap<Integer>", boxedNanos, boxedBytes, count);
+        print("IntHashMap", primitiveNanos, primitiveBytes, count);
+    }
+
+    private static void print(String map, long nanos, long bytes, int count) {
+        System.out.println(String.format("%-28s %14.1f %16.1f", map, LOOKUPS / (nanos / 1e9) / 1e6,
+                (double) bytes / count));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -9,6 +9,8 @@ public class Item {
     private double price;
     private int quantityAvailable;
     private String sellerID;
+    // Catalog version of the last change to this item; kept in memory only
+    private transient long version;
 
     /**
      * Default constructor required for JSON deserialization.
@@ -50,6 +52,19 @@ public class Item {
         return sellerID;
     }
 
+    /**
+     * Gets the catalog version that last changed this item.
+     *
+     * @return The version, or 0 if the item has not been stamped.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
     public void setName(String name) {
         this.name = name;
     }
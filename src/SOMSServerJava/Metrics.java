@@ -0,0 +1,253 @@
+package SOMSServerJava;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics holds the server's latency histograms and order counters: one histogram per
+ * command, one for saving the data files, and a counter per order outcome.
+ * <p>
+ * Everything is cumulative since the server started. When started with an interval, a
+ * background thread also takes a snapshot every interval and logs what happened during it, so
+ * the latest interval answers "what is p99 for buy right now".
+ * <p>
+ * There is one instance per server, reached through {@link #get()}, because the data files are
+ * saved from static code.
+ */
+public class Metrics {
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+    private static final Metrics INSTANCE = new Metrics();
+    // Commands are named by the client, so the number of histograms is capped
+    private static final int MAX_COMMANDS = 64;
+    private static final String OTHER_COMMANDS = "other";
+    public static final String PERSISTENCE = "save data";
+
+    /**
+     * The outcomes counted for orders placed with 'buy' and 'checkout'.
+     */
+    public enum OrderOutcome {
+        SUCCESS("success"),
+        UNKNOWN_ITEM("unknown item"),
+        INSUFFICIENT_STOCK("insufficient stock"),
+        INSUFFICIENT_BALANCE("insufficient balance"),
+        OTHER_FAILURE("other failure");
+
+        private final String label;
+
+        OrderOutcome(String label) {
+            this.label = label;
+        }
+    }
+
+    // Role and command name, such as "customer buy", to its histogram
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final LatencyHistogram persistence = new LatencyHistogram();
+    private final Map<OrderOutcome, LongAdder> orders = new EnumMap<>(OrderOutcome.class);
+    // Guarded by this
+    private Thread snapshotter;
+    private volatile String lastInterval;
+    private volatile long lastPersistenceNanos;
+
+    private Metrics() {
+        for (OrderOutcome outcome : OrderOutcome.values()) {
+            orders.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * Gets the server's metrics.
+     *
+     * @return The single Metrics instance.
+     */
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records how long a command took.
+     *
+     * @param role    "customer" or "seller".
+     * @param command The command name, such as "buy" or "view items".
+     * @param nanos   The time taken, in nanoseconds.
+     */
+    public void recordCommand(String role, String command, long nanos) {
+        String key = role + " " + command;
+        LatencyHistogram histogram = commands.get(key);
+        if (histogram == null) {
+            if (commands.size() >= MAX_COMMANDS) {
+                key = role + " " + OTHER_COMMANDS;
+            }
+            histogram = commands.computeIfAbsent(key, k -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Records how long saving the data files took.
+     *
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordPersistence(long nanos) {
+        persistence.record(nanos);
+        lastPersistenceNanos = nanos;
+    }
+
+    /**
+     * Gets how long the most recent save of the data files took.
+     *
+     * @return The time in nanoseconds, or 0 if nothing was saved yet.
+     */
+    public long getLastPersistenceNanos() {
+        return lastPersistenceNanos;
+    }
+
+    /**
+     * Gets the save times recorded since the server started.
+     *
+     * @return A snapshot of the save time histogram.
+     */
+    public LatencyHistogram.Snapshot getPersistenceSnapshot() {
+        return persistence.snapshot();
+    }
+
+    /**
+     * Counts one order outcome.
+     *
+     * @param outcome The outcome.
+     */
+    public void countOrder(OrderOutcome outcome) {
+        orders.get(outcome).increment();
+    }
+
+    /**
+     * Starts logging a snapshot of the latest interval on a background thread.
+     *
+     * @param interval The time between snapshots.
+     */
+    public synchronized void start(Duration interval) {
+        if (snapshotter != null) {
+            return;
+        }
+        long intervalMillis = Math.max(1, interval.toMillis());
+        Thread thread = new Thread(() -> {
+            Map<String, LatencyHistogram.Snapshot> previous = snapshotAll();
+            long[] previousOrders = orderCounts();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    Map<String, LatencyHistogram.Snapshot> current = snapshotAll();
+                    long[] currentOrders = orderCounts();
+                    Map<String, LatencyHistogram.Snapshot> latest = new TreeMap<>();
+                    long recorded = 0;
+                    for (Map.Entry<String, LatencyHistogram.Snapshot> entry : current.entrySet()) {
+                        LatencyHistogram.Snapshot snapshot = entry.getValue().since(previous.get(entry.getKey()));
+                        latest.put(entry.getKey(), snapshot);
+                        recorded += snapshot.getCount();
+                    }
+                    long[] intervalOrders = new long[currentOrders.length];
+                    for (int i = 0; i < currentOrders.length; i++) {
+                        intervalOrders[i] = currentOrders[i] - previousOrders[i];
+                    }
+                    String text = format("Interval of " + intervalMillis / 1000.0 + " s ending " + LocalDateTime.now(),
+                            latest, intervalOrders);
+                    lastInterval = text;
+                    // Idle intervals are kept for 'view metrics' but not logged
+                    if (recorded > 0) {
+                        logger.info(() -> "Metrics snapshot:\n" + text);
+                    }
+                    previous = current;
+                    previousOrders = currentOrders;
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Metrics snapshot failed: ", e);
+                }
+            }
+        }, "metrics-snapshot");
+        thread.setDaemon(true);
+        snapshotter = thread;
+        thread.start();
+        logger.info("Metrics snapshots started; every " + intervalMillis + " ms.");
+    }
+
+    /**
+     * Stops the snapshot thread.
+     */
+    public synchronized void shutdown() {
+        if (snapshotter != null) {
+            snapshotter.interrupt();
+            snapshotter = null;
+        }
+    }
+
+    /**
+     * Formats the metrics as text: the latest interval, if snapshots are running, and the
+     * totals since the server started.
+     *
+     * @return The text dump.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        String interval = lastInterval;
+        if (interval != null) {
+            sb.append(interval).append("\n\n");
+        }
+        sb.append(format("Since server start", snapshotAll(), orderCounts()));
+        return sb.toString();
+    }
+
+    private Map<String, LatencyHistogram.Snapshot> snapshotAll() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : commands.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        snapshots.put(PERSISTENCE, persistence.snapshot());
+        return snapshots;
+    }
+
+    private long[] orderCounts() {
+        long[] counts = new long[OrderOutcome.values().length];
+        for (OrderOutcome outcome : OrderOutcome.values()) {
+            counts[outcome.ordinal()] = orders.get(outcome).sum();
+        }
+        return counts;
+    }
+
+    private static String format(String title, Map<String, LatencyHistogram.Snapshot> snapshots, long[] orderCounts) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(title).append(":\n");
+        sb.append(String.format("%-26s %-10s %-10s %-10s %-10s %-10s %-10s\n",
+                "Operation", "Count", "Mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "Max(ms)"));
+        sb.append("-------------------------------------------------------------------------------------------\n");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-26s %-10d %-10.3f %-10.3f %-10.3f %-10.3f %-10.3f\n", entry.getKey(),
+                    snapshot.getCount(), millis(snapshot.getMeanNanos()), millis(snapshot.getPercentileNanos(50)),
+                    millis(snapshot.getPercentileNanos(90)), millis(snapshot.getPercentileNanos(99)),
+                    millis(snapshot.getMaxNanos())));
+        }
+        sb.append("Orders:");
+        for (OrderOutcome outcome : OrderOutcome.values()) {
+            sb.append(' ').append(outcome.label).append('=').append(orderCounts[outcome.ordinal()]);
+            sb.append(outcome.ordinal() < orderCounts.length - 1 ? "," : "");
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
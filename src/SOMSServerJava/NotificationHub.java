@@ -0,0 +1,149 @@
+package SOMSServerJava;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * NotificationHub pushes order events to the sessions of the users they concern: sellers
+ * hear about new orders for their items, and customers hear when their orders are fulfilled
+ * or unfulfilled.
+ * <p>
+ * Each subscribed session has its own bounded outbound queue and delivery thread. Publishing
+ * only offers a message to the queues, so a slow or stalled client never holds up the order
+ * path; if a queue is full the message is dropped and the client is told how many it missed.
+ * Notifications are single lines starting with {@link #PREFIX}, sent between or alongside
+ * command responses; clients set them apart by that prefix.
+ */
+public class NotificationHub implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(NotificationHub.class.getName());
+    public static final String PREFIX = "@notify ";
+    private static final int QUEUE_CAPACITY = 256;
+
+    // Lowercase userID to the sessions subscribed for that user
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribes a session to its user's notifications and starts its delivery thread.
+     *
+     * @param userID The ID of the session's user.
+     * @param out    The session's writer; PrintWriter serializes whole lines with responses.
+     * @return The subscription, to be passed to {@link #unsubscribe(Subscription)}.
+     */
+    public Subscription subscribe(String userID, PrintWriter out) {
+        Subscription subscription = new Subscription(userID.toLowerCase(), out);
+        subscriptions.computeIfAbsent(subscription.userKey, k -> new CopyOnWriteArraySet<>()).add(subscription);
+        subscription.start();
+        logger.info(() -> "User " + userID + " subscribed to notifications.");
+        return subscription;
+    }
+
+    /**
+     * Ends a subscription and stops its delivery thread. Queued messages are discarded.
+     *
+     * @param subscription The subscription; null is ignored.
+     */
+    public void unsubscribe(Subscription subscription) {
+        if (subscription == null) {
+            return;
+        }
+        subscriptions.computeIfPresent(subscription.userKey, (k, sessions) -> {
+            sessions.remove(subscription);
+            return sessions.isEmpty() ? null : sessions;
+        });
+        subscription.stop();
+        logger.info(() -> "User " + subscription.userKey + " unsubscribed from notifications.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        if (purchase.getStatusCode() != Purchase.PENDING) {
+            return;
+        }
+        publish(purchase.getSellerID(), "New order: purchase ID " + purchase.getPurchaseId() + " from buyer "
+                + purchase.getUserID() + ", " + purchase.getItemName() + " x" + purchase.getQuantity()
+                + " for $" + String.format("%.2f", purchase.getTotalCost()) + ".");
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        String outcome = purchase.getStatusCode() == Purchase.FULFILLED ? "fulfilled"
+                : "unfulfilled; $" + String.format("%.2f", purchase.getTotalCost()) + " was returned to your account";
+        publish(purchase.getUserID(), "Your purchase ID " + purchase.getPurchaseId() + " ("
+                + purchase.getItemName() + " x" + purchase.getQuantity() + ") was " + outcome + ".");
+    }
+
+    /**
+     * Queues a message for every session subscribed for a user.
+     *
+     * @param userID  The ID of the user; null is ignored.
+     * @param message The message text.
+     */
+    public void publish(String userID, String message) {
+        if (userID == null) {
+            return;
+        }
+        Set<Subscription> sessions = subscriptions.get(userID.toLowerCase());
+        if (sessions != null) {
+            for (Subscription subscription : sessions) {
+                subscription.offer(message);
+            }
+        }
+    }
+
+    /**
+     * One session's outbound queue and the thread that writes it to the client.
+     */
+    public static final class Subscription {
+        private final String userKey;
+        private final PrintWriter out;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicInteger dropped = new AtomicInteger();
+        private final Thread delivery;
+
+        private Subscription(String userKey, PrintWriter out) {
+            this.userKey = userKey;
+            this.out = out;
+            this.delivery = new Thread(this::deliver, "notify-" + userKey);
+            delivery.setDaemon(true);
+        }
+
+        private void start() {
+            delivery.start();
+        }
+
+        private void stop() {
+            delivery.interrupt();
+        }
+
+        private void offer(String message) {
+            if (!queue.offer(message)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        private void deliver() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    String message = queue.take();
+                    int missed = dropped.getAndSet(0);
+                    // Sessions hold this monitor while writing to the socket around the writer
+                    synchronized (out) {
+                        if (missed > 0) {
+                            out.println(PREFIX + missed + " notifications were dropped because they could not be delivered in time.");
+                        }
+                        out.println(PREFIX + message);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Unsubscribed
+            }
+        }
+    }
+}
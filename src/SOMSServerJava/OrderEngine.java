@@ -0,0 +1,182 @@
+package SOMSServerJava;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * OrderEngine applies inventory-changing commands (buy, restock, fulfil, unfulfil).
+ * <p>
+ * In DIRECT mode a command runs on the calling session thread, exactly as before.
+ * In PARTITIONED mode every item is owned by one event-loop thread, chosen by the hash
+ * of its normalized name. Commands are handed to the owning partition through a
+ * lock-free queue and applied there one at a time, so two sessions never contend on
+ * the same item. The session thread only parses the command and waits for the result.
+ * <p>
+ * Commands still take an item's monitor where they change several of its fields or check
+ * stock before taking it, because the same code runs on session threads in DIRECT mode and
+ * session threads read items under their monitors. On a partition that monitor is only ever
+ * contended by such a reader. Account and purchase monitors are shared with other partitions
+ * and sessions as before.
+ */
+public class OrderEngine {
+    private static final Logger logger = Logger.getLogger(OrderEngine.class.getName());
+
+    /**
+     * The way commands are applied.
+     */
+    public enum Mode {
+        DIRECT,
+        PARTITIONED
+    }
+
+    private final Mode mode;
+    private final Partition[] partitions;
+
+    /**
+     * Constructs a new OrderEngine.
+     *
+     * @param mode           The mode to run in.
+     * @param partitionCount The number of partition threads (ignored in DIRECT mode).
+     */
+    public OrderEngine(Mode mode, int partitionCount) {
+        this.mode = mode;
+        if (mode == Mode.PARTITIONED) {
+            if (partitionCount <= 0) {
+                throw new IllegalArgumentException("Partition count must be positive.");
+            }
+            partitions = new Partition[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new Partition(i);
+            }
+            logger.info("Order engine started in PARTITIONED mode with " + partitionCount + " partitions.");
+        } else {
+            partitions = new Partition[0];
+            logger.info("Order engine started in DIRECT mode.");
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Runs a command against the partition that owns the given item and waits for its result.
+     *
+     * @param itemKey The normalized (lowercase) item name the command touches.
+     * @param command The command to apply.
+     * @param <T>     The type of the command result.
+     * @return The result produced by the command.
+     */
+    public <T> T execute(String itemKey, Supplier<T> command) {
+        if (mode == Mode.DIRECT) {
+            return command.get();
+        }
+
+        Task<T> task = new Task<>(command);
+        partitionFor(itemKey).submit(task);
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops all partition threads once their queued commands have been applied.
+     */
+    public void shutdown() {
+        for (Partition partition : partitions) {
+            partition.stop();
+        }
+    }
+
+    private Partition partitionFor(String itemKey) {
+        return partitions[Math.floorMod(itemKey.hashCode(), partitions.length)];
+    }
+
+    /**
+     * A command waiting to be applied by a partition thread.
+     */
+    private static class Task<T> implements Runnable {
+        private final Supplier<T> command;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Task(Supplier<T> command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(command.get());
+            } catch (Throwable t) {
+                // Complete the future first, so the waiting session never hangs
+                logger.log(Level.SEVERE, "Order command failed: ", t);
+                result.completeExceptionally(t);
+                if (t instanceof Error) {
+                    throw (Error) t;
+                }
+            }
+        }
+    }
+
+    /**
+     * A single-writer event loop that owns a subset of the items.
+     */
+    private static class Partition implements Runnable {
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Partition(int index) {
+            thread = new Thread(this, "soms-partition-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void submit(Runnable task) {
+            queue.offer(task);
+            LockSupport.unpark(thread);
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    // A submit between poll and park leaves a permit, so no wake-up is lost
+                    LockSupport.park(this);
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Error e) {
+                    // Already reported to the session that submitted the task; keep serving the
+                    // partition so later commands for its items are not stranded
+                    logger.log(Level.SEVERE, "Partition " + thread.getName() + " continues after an error.", e);
+                }
+            }
+        }
+    }
+}
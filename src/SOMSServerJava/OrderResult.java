@@ -0,0 +1,36 @@
+package SOMSServerJava;
+
+/**
+ * OrderResult is the outcome of an order command, carrying the message for the client.
+ */
+public class OrderResult {
+    private final boolean success;
+    private final String message;
+
+    /**
+     * Constructs a new OrderResult.
+     *
+     * @param success Whether the command changed any data.
+     * @param message The message to send back to the client.
+     */
+    public OrderResult(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    public static OrderResult success(String message) {
+        return new OrderResult(true, message);
+    }
+
+    public static OrderResult failure(String message) {
+        return new OrderResult(false, message);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
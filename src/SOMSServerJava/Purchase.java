@@ -1,23 +1,64 @@
-
 package SOMSServerJava;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
 
 
 import com.google.gson.annotations.SerializedName;
 
 /**
  * Purchase represents a transaction made by a customer.
+ * <p>
+ * The in-memory layout is compact: user, item and seller IDs are codes into a shared
+ * {@link StringDictionary}, the status is a byte, the date is a nanosecond timestamp and the
+ * cost is held in cents. The getters and setters keep their original types, and
+ * {@link PurchaseAdapter} keeps the JSON format unchanged.
  */
 public class Purchase {
+    /**
+     * Shared dictionary for the user, item and seller IDs of all purchases.
+     */
+    static final StringDictionary NAMES = new StringDictionary();
+
+    /**
+     * Orders purchases by date, then buyer and purchase ID so that distinct purchases never compare equal.
+     */
+    public static final Comparator<Purchase> BY_DATE = Comparator
+            .comparingLong(Purchase::getPurchaseTime)
+            .thenComparing(Purchase::getUserID)
+            .thenComparingInt(Purchase::getPurchaseId);
+
+    /**
+     * Builds a search key that sorts before every real purchase made at the given time
+     * under {@link #BY_DATE}.
+     *
+     * @param date The time to position at.
+     * @return A probe purchase usable with date-ordered sets' navigation methods.
+     */
+    public static Purchase probeAt(LocalDateTime date) {
+        Purchase probe = new Purchase();
+        probe.setPurchaseDate(date);
+        probe.setUserID("");
+        probe.setPurchaseId(Integer.MIN_VALUE);
+        return probe;
+    }
+
+    static final byte PENDING = 0;
+    static final byte FULFILLED = 1;
+    static final byte UNFULFILLED = 2;
+    private static final String[] STATUSES = {"pending", "fulfilled", "unfulfilled"};
+    private static final byte NO_STATUS = -1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
     private int purchaseId;
-    private String userID;
-    private String itemName;
+    private int userCode = -1;
+    private int itemCode = -1;
     private int quantity;
-    private LocalDateTime purchaseDate;
-    private String sellerID;
-    private double totalCost;
-    private String status; // "pending", "fulfilled", "unfulfilled"
+    private long purchaseTime = NO_DATE; // Nanoseconds since the epoch, read as UTC
+    private int sellerCode = -1;
+    private long totalCostCents;
+    private byte status = NO_STATUS; // Index into STATUSES
 
     /**
      * Default constructor for GSON.
@@ -37,16 +78,31 @@ public class Purchase {
      */
     public Purchase(String userID, String itemName, int quantity, LocalDateTime purchaseDate,
                     String sellerID, double totalCost, String status) {
-        this.userID = userID;
-        this.itemName = itemName;
+        setUserID(userID);
+        setItemName(itemName);
         this.quantity = quantity;
-        this.purchaseDate = purchaseDate;
-        this.sellerID = sellerID;
-        this.totalCost = totalCost;
+        setPurchaseDate(purchaseDate);
+        setSellerID(sellerID);
+        setTotalCost(totalCost);
         setStatus(status);
 
     }
 
+    /**
+     * Rebuilds a purchase from its encoded fields, as stored by {@link PurchaseArchive}.
+     */
+    Purchase(int purchaseId, int userCode, int itemCode, int quantity, long purchaseTime,
+             int sellerCode, long totalCostCents, byte status) {
+        this.purchaseId = purchaseId;
+        this.userCode = userCode;
+        this.itemCode = itemCode;
+        this.quantity = quantity;
+        this.purchaseTime = purchaseTime;
+        this.sellerCode = sellerCode;
+        this.totalCostCents = totalCostCents;
+        this.status = status;
+    }
+
     // Getters and Setters
 
     public int getPurchaseId() {
@@ -58,19 +114,19 @@ public class Purchase {
     }
 
     public String getUserID() {
-        return userID;
+        return NAMES.decode(userCode);
     }
 
     public void setUserID(String userID) {
-        this.userID = userID;
+        this.userCode = NAMES.encode(userID);
     }
 
     public String getItemName() {
-        return itemName;
+        return NAMES.decode(itemCode);
     }
 
     public void setItemName(String itemName) {
-        this.itemName = itemName;
+        this.itemCode = NAMES.encode(itemName);
     }
 
     public int getQuantity() {
@@ -82,27 +138,80 @@ public class Purchase {
     }
 
     public LocalDateTime getPurchaseDate() {
-        return purchaseDate;
+        if (purchaseTime == NO_DATE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(purchaseTime, 1_000_000_000L),
+                (int) Math.floorMod(purchaseTime, 1_000_000_000L), ZoneOffset.UTC);
     }
 
     public void setPurchaseDate(LocalDateTime purchaseDate) {
-        this.purchaseDate = purchaseDate;
+        if (purchaseDate == null) {
+            this.purchaseTime = NO_DATE;
+            return;
+        }
+        this.purchaseTime = purchaseDate.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + purchaseDate.getNano();
+    }
+
+    /**
+     * Gets the purchase date as nanoseconds since the epoch, for cheap ordering.
+     *
+     * @return The encoded purchase date, or Long.MIN_VALUE if it is not set.
+     */
+    public long getPurchaseTime() {
+        return purchaseTime;
     }
 
     public String getSellerID() {
-        return sellerID;
+        return NAMES.decode(sellerCode);
     }
 
     public void setSellerID(String sellerID) {
-        this.sellerID = sellerID;
+        this.sellerCode = NAMES.encode(sellerID);
+    }
+
+    /**
+     * Gets the dictionary code of the seller ID.
+     *
+     * @return The seller's code in {@link #NAMES}, or -1 if not set.
+     */
+    int getSellerCode() {
+        return sellerCode;
+    }
+
+    /**
+     * Gets the dictionary code of the item name.
+     *
+     * @return The item's code in {@link #NAMES}, or -1 if not set.
+     */
+    int getItemCode() {
+        return itemCode;
+    }
+
+    /**
+     * Gets the dictionary code of the buyer's user ID.
+     *
+     * @return The buyer's code in {@link #NAMES}, or -1 if not set.
+     */
+    int getUserCode() {
+        return userCode;
     }
 
     public double getTotalCost() {
-        return totalCost;
+        return totalCostCents / 100.0;
     }
 
     public void setTotalCost(double totalCost) {
-        this.totalCost = totalCost;
+        this.totalCostCents = Math.round(totalCost * 100);
+    }
+
+    /**
+     * Gets the total cost in cents.
+     *
+     * @return The total cost of the purchase in cents.
+     */
+    public long getTotalCostCents() {
+        return totalCostCents;
     }
 
     /**
@@ -111,6 +220,15 @@ public class Purchase {
      * @return The status ("pending", "fulfilled", "unfulfilled").
      */
     public String getStatus() {
+        return status == NO_STATUS ? null : STATUSES[status];
+    }
+
+    /**
+     * Gets the status as its byte code: 0 pending, 1 fulfilled, 2 unfulfilled.
+     *
+     * @return The status code, or -1 if not set.
+     */
+    byte getStatusCode() {
         return status;
     }
 
@@ -121,13 +239,13 @@ public class Purchase {
      * @throws IllegalArgumentException if the status is invalid.
      */
     public void setStatus(String status) {
-        if (status.equalsIgnoreCase("pending") ||
-                status.equalsIgnoreCase("fulfilled") ||
-                status.equalsIgnoreCase("unfulfilled")) {
-            this.status = status.toLowerCase();
-        } else {
-            throw new IllegalArgumentException("Invalid status. Must be 'pending', 'fulfilled', or 'unfulfilled'.");
+        for (byte i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equalsIgnoreCase(status)) {
+                this.status = i;
+                return;
+            }
         }
+        throw new IllegalArgumentException("Invalid status. Must be 'pending', 'fulfilled', or 'unfulfilled'.");
     }
 
     /**
@@ -139,13 +257,13 @@ public class Purchase {
     public String toString() {
         return "Purchase{" +
                 "purchaseId=" + purchaseId +
-                ", userID='" + userID + '\'' +
-                ", itemName='" + itemName + '\'' +
+                ", userID='" + getUserID() + '\'' +
+                ", itemName='" + getItemName() + '\'' +
                 ", quantity=" + quantity +
-                ", purchaseDate=" + purchaseDate +
-                ", sellerID='" + sellerID + '\'' +
-                ", totalCost=" + totalCost +
-                ", status='" + status + '\'' +
+                ", purchaseDate=" + getPurchaseDate() +
+                ", sellerID='" + getSellerID() + '\'' +
+                ", totalCost=" + getTotalCost() +
+                ", status='" + getStatus() + '\'' +
                 '}';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package SOMSServerJava;
+
+import com.google.gson.*;
+
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * PurchaseAdapter reads and writes Purchase objects in the readable purchases.json format,
+ * independent of the compact in-memory layout.
+ */
+public class PurchaseAdapter implements JsonSerializer<Purchase>, JsonDeserializer<Purchase> {
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    /**
+     * Serializes a Purchase object to JSON.
+     *
+     * @param src       The Purchase source.
+     * @param typeOfSrc The type of the source.
+     * @param context   The JSON serialization context.
+     * @return A JsonElement representing the serialized Purchase.
+     */
+    @Override
+    public JsonElement serialize(Purchase src, Type typeOfSrc, JsonSerializationContext context) {
+        JsonObject json = new JsonObject();
+        json.addProperty("purchaseId", src.getPurchaseId());
+        addIfPresent(json, "userID", src.getUserID());
+        addIfPresent(json, "itemName", src.getItemName());
+        json.addProperty("quantity", src.getQuantity());
+        LocalDateTime purchaseDate = src.getPurchaseDate();
+        if (purchaseDate != null) {
+            json.addProperty("purchaseDate", purchaseDate.format(formatter));
+        }
+        addIfPresent(json, "sellerID", src.getSellerID());
+        json.addProperty("totalCost", src.getTotalCost());
+        addIfPresent(json, "status", src.getStatus());
+        return json;
+    }
+
+    /**
+     * Deserializes a JSON element to a Purchase object.
+     *
+     * @param json    The JSON element.
+     * @param typeOfT The type of the target.
+     * @param context The JSON deserialization context.
+     * @return The deserialized Purchase object.
+     * @throws JsonParseException If parsing fails.
+     */
+    @Override
+    public Purchase deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+            throws JsonParseException {
+        JsonObject object = json.getAsJsonObject();
+        Purchase purchase = new Purchase();
+        try {
+            if (has(object, "purchaseId")) {
+                purchase.setPurchaseId(object.get("purchaseId").getAsInt());
+            }
+            if (has(object, "userID")) {
+                purchase.setUserID(object.get("userID").getAsString());
+            }
+            if (has(object, "itemName")) {
+                purchase.setItemName(object.get("itemName").getAsString());
+            }
+            if (has(object, "quantity")) {
+                purchase.setQuantity(object.get("quantity").getAsInt());
+            }
+            if (has(object, "purchaseDate")) {
+                purchase.setPurchaseDate(LocalDateTime.parse(object.get("purchaseDate").getAsString(), formatter));
+            }
+            if (has(object, "sellerID")) {
+                purchase.setSellerID(object.get("sellerID").getAsString());
+            }
+            if (has(object, "totalCost")) {
+                purchase.setTotalCost(object.get("totalCost").getAsDouble());
+            }
+            if (has(object, "status")) {
+                purchase.setStatus(object.get("status").getAsString());
+            }
+        } catch (RuntimeException e) {
+            throw new JsonParseException("Invalid purchase: " + json, e);
+        }
+        return purchase;
+    }
+
+    private static boolean has(JsonObject object, String name) {
+        return object.has(name) && !object.get(name).isJsonNull();
+    }
+
+    private static void addIfPresent(JsonObject json, String name, String value) {
+        if (value != null) {
+            json.addProperty(name, value);
+        }
+    }
+}
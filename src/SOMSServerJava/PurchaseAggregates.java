@@ -0,0 +1,199 @@
+package SOMSServerJava;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * PurchaseAggregates keeps running order totals per seller and per buyer, so summaries are
+ * read in O(1) instead of scanning the purchases map.
+ * <p>
+ * The totals are rebuilt once from the loaded purchases and then adjusted on each state
+ * transition: a purchase placed as pending, and a pending purchase fulfilled or unfulfilled.
+ * Sellers are keyed by the lowercase sellerID recorded when the purchase was made; buyers by
+ * the purchase's userID.
+ */
+public class PurchaseAggregates implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(PurchaseAggregates.class.getName());
+    private static final Totals EMPTY = new Totals();
+
+    private final Map<String, Totals> bySeller = new ConcurrentHashMap<>();
+    private final Map<String, Totals> byBuyer = new ConcurrentHashMap<>();
+    // Seller key each pending purchase was counted under; completion may overwrite its sellerID
+    private final Map<Purchase, String> pendingSellers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new PurchaseAggregates from the loaded purchases.
+     *
+     * @param purchases Map of userID to their purchases.
+     */
+    public PurchaseAggregates(Map<String, Map<Integer, Purchase>> purchases) {
+        int count = 0;
+        for (Map<Integer, Purchase> userPurchases : purchases.values()) {
+            for (Purchase purchase : userPurchases.values()) {
+                purchaseCreated(purchase);
+                count++;
+            }
+        }
+        logger.info("Aggregated " + count + " purchases for " + bySeller.size() + " sellers and "
+                + byBuyer.size() + " buyers.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        String sellerKey = keyOf(purchase.getSellerID());
+        byte status = purchase.getStatusCode();
+        if (status == Purchase.PENDING && sellerKey != null) {
+            pendingSellers.put(purchase, sellerKey);
+        }
+        if (sellerKey != null) {
+            totalsFor(bySeller, sellerKey).placed(status, purchase.getTotalCostCents());
+        }
+        if (purchase.getUserID() != null) {
+            totalsFor(byBuyer, purchase.getUserID()).placed(status, purchase.getTotalCostCents());
+        }
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        String sellerKey = pendingSellers.remove(purchase);
+        byte status = purchase.getStatusCode();
+        if (sellerKey != null) {
+            totalsFor(bySeller, sellerKey).completed(status, purchase.getTotalCostCents());
+        }
+        if (purchase.getUserID() != null) {
+            totalsFor(byBuyer, purchase.getUserID()).completed(status, purchase.getTotalCostCents());
+        }
+    }
+
+    /**
+     * Returns a snapshot of a seller's totals.
+     *
+     * @param sellerID The ID of the seller.
+     * @return The seller's totals; all zero if they have no orders.
+     */
+    public Totals getSellerTotals(String sellerID) {
+        Totals totals = sellerID == null ? null : bySeller.get(keyOf(sellerID));
+        return totals == null ? EMPTY : totals.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of a buyer's totals.
+     *
+     * @param buyerID The ID of the buyer.
+     * @return The buyer's totals; all zero if they have no orders.
+     */
+    public Totals getBuyerTotals(String buyerID) {
+        Totals totals = buyerID == null ? null : byBuyer.get(buyerID);
+        return totals == null ? EMPTY : totals.snapshot();
+    }
+
+    /**
+     * Returns the totals over all buyers. Each buyer's totals are read in turn, so the sum may
+     * straddle concurrent changes.
+     *
+     * @return The summed totals.
+     */
+    public Totals getOverallTotals() {
+        Totals overall = new Totals();
+        for (Totals totals : byBuyer.values()) {
+            overall.include(totals.snapshot());
+        }
+        return overall;
+    }
+
+    private static Totals totalsFor(Map<String, Totals> index, String key) {
+        return index.computeIfAbsent(key, k -> new Totals());
+    }
+
+    private static String keyOf(String sellerID) {
+        return sellerID == null ? null : sellerID.toLowerCase();
+    }
+
+    /**
+     * Order counts and values in cents, by status. For a seller, fulfilled value is revenue;
+     * for a buyer, it is the amount spent.
+     */
+    public static final class Totals {
+        private long orders;
+        private long pendingCount;
+        private long pendingCents;
+        private long fulfilledCount;
+        private long fulfilledCents;
+        private long unfulfilledCount;
+        private long unfulfilledCents;
+
+        public synchronized long getOrders() {
+            return orders;
+        }
+
+        public synchronized long getPendingCount() {
+            return pendingCount;
+        }
+
+        public synchronized long getPendingCents() {
+            return pendingCents;
+        }
+
+        public synchronized long getFulfilledCount() {
+            return fulfilledCount;
+        }
+
+        public synchronized long getFulfilledCents() {
+            return fulfilledCents;
+        }
+
+        public synchronized long getUnfulfilledCount() {
+            return unfulfilledCount;
+        }
+
+        public synchronized long getUnfulfilledCents() {
+            return unfulfilledCents;
+        }
+
+        private synchronized void placed(byte status, long cents) {
+            orders++;
+            add(status, 1, cents);
+        }
+
+        private synchronized void completed(byte status, long cents) {
+            add(Purchase.PENDING, -1, -cents);
+            add(status, 1, cents);
+        }
+
+        private void add(byte status, long count, long cents) {
+            if (status == Purchase.PENDING) {
+                pendingCount += count;
+                pendingCents += cents;
+            } else if (status == Purchase.FULFILLED) {
+                fulfilledCount += count;
+                fulfilledCents += cents;
+            } else if (status == Purchase.UNFULFILLED) {
+                unfulfilledCount += count;
+                unfulfilledCents += cents;
+            }
+        }
+
+        private synchronized void include(Totals other) {
+            orders += other.orders;
+            pendingCount += other.pendingCount;
+            pendingCents += other.pendingCents;
+            fulfilledCount += other.fulfilledCount;
+            fulfilledCents += other.fulfilledCents;
+            unfulfilledCount += other.unfulfilledCount;
+            unfulfilledCents += other.unfulfilledCents;
+        }
+
+        private synchronized Totals snapshot() {
+            Totals copy = new Totals();
+            copy.orders = orders;
+            copy.pendingCount = pendingCount;
+            copy.pendingCents = pendingCents;
+            copy.fulfilledCount = fulfilledCount;
+            copy.fulfilledCents = fulfilledCents;
+            copy.unfulfilledCount = unfulfilledCount;
+            copy.unfulfilledCents = unfulfilledCents;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package SOMSServerJava;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * PurchaseArchive keeps fulfilled and unfulfilled purchases outside the Java heap.
+ * <p>
+ * Each terminal purchase is one fixed 40-byte record in direct buffers that are allocated in
+ * chunks and never moved, so the garbage collector neither traces nor copies the history.
+ * Only pending purchases stay live {@link Purchase} objects. The on-heap side is a row-number
+ * index: each buyer's {@link ArchivedPurchaseMap} and a per-seller list of rows kept in
+ * {@link Purchase#BY_DATE} order, so history is served as an {@link ArchivedHistory} view without
+ * copying or sorting. Reading an archived purchase decodes its record into a short-lived Purchase.
+ * <p>
+ * Once archived, a record is never modified; a purchase is archived when it is completed.
+ */
+public class PurchaseArchive implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(PurchaseArchive.class.getName());
+
+    // Record layout
+    private static final int PURCHASE_ID = 0;
+    private static final int USER = 4;
+    private static final int ITEM = 8;
+    private static final int QUANTITY = 12;
+    private static final int TIME = 16;
+    private static final int SELLER = 24;
+    private static final int STATUS = 28;
+    private static final int COST = 32;
+    private static final int RECORD_BYTES = 40;
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+
+    private final Map<String, Map<Integer, Purchase>> purchases;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int size; // Written under this
+    private final Map<String, DateOrderedRows> sellerRows = new ConcurrentHashMap<>();
+    // Seller key each pending purchase was placed with; completion may overwrite its sellerID
+    private final Map<Purchase, String> pendingSellers = new ConcurrentHashMap<>();
+    // Buyer key each pending purchase is filed under, which stored data may not match its userID
+    private final Map<Purchase, String> pendingBuyers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new PurchaseArchive and moves the terminal purchases of the loaded data into it.
+     * Each buyer's map in {@code purchases} is replaced by an {@link ArchivedPurchaseMap}.
+     *
+     * @param purchases Map of userID to their purchases.
+     */
+    public PurchaseArchive(Map<String, Map<Integer, Purchase>> purchases) {
+        this.purchases = purchases;
+        for (Map.Entry<String, Map<Integer, Purchase>> entry : purchases.entrySet()) {
+            ArchivedPurchaseMap buyerPurchases = new ArchivedPurchaseMap(this);
+            for (Map.Entry<Integer, Purchase> stored : entry.getValue().entrySet()) {
+                Purchase purchase = stored.getValue();
+                if (purchase.getStatusCode() == Purchase.PENDING) {
+                    purchaseCreated(purchase);
+                    pendingBuyers.put(purchase, entry.getKey());
+                    buyerPurchases.put(stored.getKey(), purchase);
+                } else {
+                    int row = append(purchase, keyOf(purchase.getSellerID()), true);
+                    buyerPurchases.addArchived(stored.getKey(), row);
+                }
+            }
+            buyerPurchases.sortArchived();
+            entry.setValue(buyerPurchases);
+        }
+        for (DateOrderedRows rows : sellerRows.values()) {
+            rows.sort();
+        }
+        logger.info("Archived " + size + " purchases off-heap (" + getOffHeapBytes() / 1024 + " KiB).");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        if (purchase.getStatusCode() == Purchase.PENDING) {
+            String sellerKey = keyOf(purchase.getSellerID());
+            if (sellerKey != null) {
+                pendingSellers.put(purchase, sellerKey);
+            }
+            // New purchases are filed under the buyer's userID
+            pendingBuyers.put(purchase, purchase.getUserID());
+        }
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        String sellerKey = pendingSellers.remove(purchase);
+        int row = append(purchase, sellerKey != null ? sellerKey : keyOf(purchase.getSellerID()), false);
+        String buyerKey = pendingBuyers.remove(purchase);
+        Map<Integer, Purchase> owner = purchases.get(buyerKey != null ? buyerKey : purchase.getUserID());
+        if (owner instanceof ArchivedPurchaseMap && ((ArchivedPurchaseMap) owner).archive(purchase, row)) {
+            return;
+        }
+        logger.warning("Archived purchase " + purchase.getPurchaseId() + " was not found in any buyer's purchases.");
+    }
+
+    /**
+     * Creates the purchases map for a buyer seen for the first time.
+     *
+     * @return An empty map that archives the buyer's purchases as they complete.
+     */
+    public Map<Integer, Purchase> newBuyerMap() {
+        return new ArchivedPurchaseMap(this);
+    }
+
+    /**
+     * Returns a buyer's history: the archived purchases merged with the pending ones.
+     *
+     * @param buyerID The ID of the buyer.
+     * @param pending The buyer's pending purchases, in date order.
+     * @return A read-only view of the buyer's purchases, oldest first.
+     */
+    public NavigableSet<Purchase> buyerHistory(String buyerID, NavigableSet<Purchase> pending) {
+        Map<Integer, Purchase> buyerPurchases = purchases.get(buyerID);
+        if (!(buyerPurchases instanceof ArchivedPurchaseMap)) {
+            return pending;
+        }
+        return ((ArchivedPurchaseMap) buyerPurchases).getHistory().view(pending);
+    }
+
+    /**
+     * Returns a seller's history: the archived purchases filed under the seller merged with the
+     * pending ones.
+     *
+     * @param sellerID The ID of the seller.
+     * @param pending  The seller's pending purchases, in date order.
+     * @return A read-only view of the seller's purchases, oldest first.
+     */
+    public NavigableSet<Purchase> sellerHistory(String sellerID, NavigableSet<Purchase> pending) {
+        DateOrderedRows rows = sellerID == null ? null : sellerRows.get(keyOf(sellerID));
+        return rows == null ? pending : rows.view(pending);
+    }
+
+    /**
+     * Decodes an archived record.
+     *
+     * @param row The record's row number.
+     * @return A new Purchase holding the record's fields.
+     */
+    public Purchase read(int row) {
+        ByteBuffer chunk = chunks[row / RECORDS_PER_CHUNK];
+        int base = (row % RECORDS_PER_CHUNK) * RECORD_BYTES;
+        return new Purchase(chunk.getInt(base + PURCHASE_ID), chunk.getInt(base + USER), chunk.getInt(base + ITEM),
+                chunk.getInt(base + QUANTITY), chunk.getLong(base + TIME), chunk.getInt(base + SELLER),
+                chunk.getLong(base + COST), chunk.get(base + STATUS));
+    }
+
+    /**
+     * Gets the number of archived purchases.
+     *
+     * @return The record count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the amount of direct memory allocated for records.
+     *
+     * @return The allocated size in bytes.
+     */
+    public long getOffHeapBytes() {
+        return (long) chunks.length * RECORDS_PER_CHUNK * RECORD_BYTES;
+    }
+
+    private synchronized int append(Purchase purchase, String sellerKey, boolean loading) {
+        int row = size;
+        ByteBuffer[] current = chunks;
+        if (row / RECORDS_PER_CHUNK == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_BYTES);
+            chunks = current;
+        }
+        ByteBuffer chunk = current[row / RECORDS_PER_CHUNK];
+        int base = (row % RECORDS_PER_CHUNK) * RECORD_BYTES;
+        chunk.putInt(base + PURCHASE_ID, purchase.getPurchaseId());
+        chunk.putInt(base + USER, purchase.getUserCode());
+        chunk.putInt(base + ITEM, purchase.getItemCode());
+        chunk.putInt(base + QUANTITY, purchase.getQuantity());
+        chunk.putLong(base + TIME, purchase.getPurchaseTime());
+        chunk.putInt(base + SELLER, purchase.getSellerCode());
+        chunk.put(base + STATUS, purchase.getStatusCode());
+        chunk.putLong(base + COST, purchase.getTotalCostCents());
+        // Publishing the new size makes the record visible to readers
+        size = row + 1;
+        if (sellerKey != null) {
+            DateOrderedRows rows = sellerRows.computeIfAbsent(sellerKey, k -> new DateOrderedRows(this));
+            if (loading) {
+                rows.load(row);
+            } else {
+                rows.add(row);
+            }
+        }
+        return row;
+    }
+
+    private static String keyOf(String sellerID) {
+        return sellerID == null ? null : sellerID.toLowerCase();
+    }
+
+    /**
+     * Row numbers kept in {@link Purchase#BY_DATE} order. Readers take the published array and
+     * count without locking; a row added in the middle copies the array, so a published array is
+     * never changed below its count.
+     */
+    static final class DateOrderedRows {
+        private final PurchaseArchive archive;
+        // Guarded by this
+        private int[] rows = new int[8];
+        private volatile Published published = new Published(rows, 0);
+
+        DateOrderedRows(PurchaseArchive archive) {
+            this.archive = archive;
+        }
+
+        /**
+         * Adds a row in date order.
+         *
+         * @param row The row of a record already in the archive.
+         */
+        synchronized void add(int row) {
+            int count = published.count;
+            Purchase purchase = archive.read(row);
+            // Purchases mostly complete in date order, so the row usually goes last
+            int at = count;
+            if (count > 0 && Purchase.BY_DATE.compare(archive.read(rows[count - 1]), purchase) > 0) {
+                at = insertionPoint(purchase, count);
+            }
+            if (at == count && count < rows.length) {
+                rows[count] = row;
+            } else {
+                int[] copy = new int[count < rows.length ? rows.length : rows.length * 2];
+                System.arraycopy(rows, 0, copy, 0, at);
+                copy[at] = row;
+                System.arraycopy(rows, at, copy, at + 1, count - at);
+                rows = copy;
+            }
+            published = new Published(rows, count + 1);
+        }
+
+        /**
+         * Appends a row while loading; {@link #sort()} must be called before the rows are read.
+         *
+         * @param row The row of a record already in the archive.
+         */
+        synchronized void load(int row) {
+            int count = published.count;
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count] = row;
+            published = new Published(rows, count + 1);
+        }
+
+        /**
+         * Puts rows appended with {@link #load(int)} in date order.
+         */
+        synchronized void sort() {
+            int count = published.count;
+            Purchase[] decoded = new Purchase[count];
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                decoded[i] = archive.read(rows[i]);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Purchase.BY_DATE.compare(decoded[a], decoded[b]));
+            int[] sorted = new int[rows.length];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = rows[order[i]];
+            }
+            rows = sorted;
+            published = new Published(rows, count);
+        }
+
+        /**
+         * Returns the rows merged with live purchases.
+         *
+         * @param pending The pending purchases, in date order.
+         * @return A read-only view of the rows as they are now and the pending purchases.
+         */
+        NavigableSet<Purchase> view(NavigableSet<Purchase> pending) {
+            Published current = published;
+            if (current.count == 0) {
+                return pending;
+            }
+            return new ArchivedHistory(archive, current.rows, current.count, pending);
+        }
+
+        private int insertionPoint(Purchase purchase, int count) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Purchase.BY_DATE.compare(archive.read(rows[mid]), purchase) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final class Published {
+        private final int[] rows;
+        private final int count;
+
+        Published(int[] rows, int count) {
+            this.rows = rows;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package SOMSServerJava;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * PurchaseEvents forwards each purchase event to every registered PurchaseListener.
+ */
+public class PurchaseEvents implements PurchaseListener {
+    private final List<PurchaseListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener for all subsequent purchase events.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(PurchaseListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        for (PurchaseListener listener : listeners) {
+            listener.purchaseCreated(purchase);
+        }
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        for (PurchaseListener listener : listeners) {
+            listener.purchaseCompleted(purchase);
+        }
+    }
+}
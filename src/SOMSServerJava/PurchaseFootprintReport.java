@@ -0,0 +1,107 @@
+package SOMSServerJava;
+
+import java.time.LocalDateTime;
+
+/**
+ * PurchaseFootprintReport compares the heap used by one million purchases in the original
+ * object layout and in the compact Purchase layout.
+ * <p>
+ * Run with enough heap for the original layout, e.g.:
+ * java -Xmx2g -cp "out:libs/gson-2.11.0.jar" SOMSServerJava.PurchaseFootprintReport
+ */
+public class PurchaseFootprintReport {
+    private static final int PURCHASES = 1_000_000;
+    private static final int BUYERS = 10_000;
+    private static final int ITEMS = 1_000;
+    private static final int SELLERS = 100;
+    private static final String[] STATUSES = {"pending", "fulfilled", "unfulfilled"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : PURCHASES;
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        long baseline = usedHeap();
+        LegacyPurchase[] legacy = new LegacyPurchase[count];
+        for (int i = 0; i < count; i++) {
+            // JSON parsing produces a fresh String for every field of every purchase
+            legacy[i] = new LegacyPurchase(i,
+                    new String("buyer" + (i % BUYERS)),
+                    new String("item" + (i % ITEMS)),
+                    i % 10 + 1,
+                    start.plusSeconds(i).plusNanos(i % 1_000_000 * 1000L),
+                    new String("seller" + (i % SELLERS)),
+                    (i % 10 + 1) * 12.5,
+                    new String(STATUSES[i % STATUSES.length]));
+        }
+        long legacyBytes = usedHeap() - baseline;
+        legacy = null;
+
+        baseline = usedHeap();
+        Purchase[] compact = new Purchase[count];
+        for (int i = 0; i < count; i++) {
+            Purchase purchase = new Purchase("buyer" + (i % BUYERS), "item" + (i % ITEMS), i % 10 + 1,
+                    start.plusSeconds(i).plusNanos(i % 1_000_000 * 1000L), "seller" + (i % SELLERS),
+                    (i % 10 + 1) * 12.5, STATUSES[i % STATUSES.length]);
+            purchase.setPurchaseId(i);
+            compact[i] = purchase;
+        }
+        long compactBytes = usedHeap() - baseline;
+
+        System.out.println("Purchase memory footprint for " + count + " purchases");
+        System.out.println(String.format("%-10s %15s %18s", "Layout", "Total (MB)", "Bytes/purchase"));
+        System.out.println("---------------------------------------------");
+        print("Original", legacyBytes, count);
+        print("Compact", compactBytes, count);
+        System.out.println(String.format("Reduction: %.1fx (dictionary holds %d distinct strings)",
+                (double) legacyBytes / compactBytes, Purchase.NAMES.size()));
+
+        // Keep the compact purchases reachable until they have been measured
+        if (compact[count - 1].getPurchaseId() != count - 1) {
+            throw new IllegalStateException("Unexpected purchase ID.");
+        }
+    }
+
+    private static void print(String layout, long bytes, int count) {
+        System.out.println(String.format("%-10s %15.1f %18.1f", layout, bytes / (1024.0 * 1024.0),
+                (double) bytes / count));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The Purchase field layout before it was made compact.
+     */
+    private static class LegacyPurchase {
+        private final int purchaseId;
+        private final String userID;
+        private final String itemName;
+        private final int quantity;
+        private final LocalDateTime purchaseDate;
+        private final String sellerID;
+        private final double totalCost;
+        private final String status;
+
+        LegacyPurchase(int purchaseId, String userID, String itemName, int quantity, LocalDateTime purchaseDate,
+                       String sellerID, double totalCost, String status) {
+            this.purchaseId = purchaseId;
+            this.userID = userID;
+            this.itemName = itemName;
+            this.quantity = quantity;
+            this.purchaseDate = purchaseDate;
+            this.sellerID = sellerID;
+            this.totalCost = totalCost;
+            this.status = status;
+        }
+    }
+}
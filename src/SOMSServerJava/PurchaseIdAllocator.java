@@ -0,0 +1,61 @@
+package SOMSServerJava;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * PurchaseIdAllocator hands out purchase IDs from a monotonic per-buyer sequence.
+ * Allocation is O(1) and atomic, so concurrent sessions of the same buyer never
+ * receive the same ID.
+ */
+public class PurchaseIdAllocator {
+    private static final Logger logger = Logger.getLogger(PurchaseIdAllocator.class.getName());
+    private final Map<String, AtomicInteger> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new PurchaseIdAllocator, recovering each buyer's sequence
+     * from the highest purchase ID already stored for them.
+     *
+     * @param purchases Map of userID to their purchases, as loaded at startup.
+     */
+    public PurchaseIdAllocator(Map<String, Map<Integer, Purchase>> purchases) {
+        for (Map.Entry<String, Map<Integer, Purchase>> entry : purchases.entrySet()) {
+            int maxId = 0;
+            for (Integer purchaseId : entry.getValue().keySet()) {
+                maxId = Math.max(maxId, purchaseId);
+            }
+            sequences.put(entry.getKey(), new AtomicInteger(maxId));
+        }
+        logger.info("Recovered purchase ID sequences for " + sequences.size() + " buyers.");
+    }
+
+    /**
+     * Allocates the next purchase ID for a buyer.
+     *
+     * @param buyerID The ID of the buyer.
+     * @return A purchase ID not used before for this buyer.
+     */
+    public int next(String buyerID) {
+        return sequenceFor(buyerID).incrementAndGet();
+    }
+
+    /**
+     * Allocates a contiguous block of purchase IDs for a buyer.
+     *
+     * @param buyerID The ID of the buyer.
+     * @param count   The number of IDs to allocate.
+     * @return The first ID of the block; the block is [first, first + count).
+     */
+    public int nextBlock(String buyerID, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        return sequenceFor(buyerID).getAndAdd(count) + 1;
+    }
+
+    private AtomicInteger sequenceFor(String buyerID) {
+        return sequences.computeIfAbsent(buyerID, k -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,23 @@
+package SOMSServerJava;
+
+/**
+ * PurchaseListener is notified of purchase lifecycle events so that derived
+ * structures (indexes, counters, caches) can be kept in step with the purchases map.
+ * Callbacks run on the thread that applied the change and must be cheap.
+ */
+public interface PurchaseListener {
+
+    /**
+     * Called after a new pending purchase has been stored.
+     *
+     * @param purchase The new purchase.
+     */
+    void purchaseCreated(Purchase purchase);
+
+    /**
+     * Called after a pending purchase has been marked fulfilled or unfulfilled.
+     *
+     * @param purchase The completed purchase, already carrying its new status.
+     */
+    void purchaseCompleted(Purchase purchase);
+}
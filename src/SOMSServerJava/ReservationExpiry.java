@@ -0,0 +1,274 @@
+package SOMSServerJava;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ReservationExpiry marks pending purchases unfulfilled once they have waited longer than a
+ * time-to-live, releasing the buyer's funds and the reserved stock through
+ * {@link Reservations#release(Purchase, String)}.
+ * <p>
+ * Deadlines are kept in a hashed timing wheel: a ring of slots, each holding the reservations
+ * due in that slot on this or a later turn of the wheel. One scheduler thread advances the
+ * wheel a slot per tick and only looks at that slot, so there are no per-purchase timers and
+ * the work per tick does not grow with the number of outstanding reservations. New
+ * reservations, and purchases completed by their seller, are handed to the thread through
+ * lock-free queues; a completed purchase is taken out of its slot on the next tick. Data is
+ * saved once per tick in which anything expired.
+ */
+public class ReservationExpiry implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(ReservationExpiry.class.getName());
+    private static final int WHEEL_SIZE = 4096;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SOMSContext context;
+    private final long ttlNanos;
+    private final Queue<Reservation> incoming = new ConcurrentLinkedQueue<>();
+    private final Queue<Purchase> completed = new ConcurrentLinkedQueue<>();
+    // Owned by the scheduler thread
+    private final Slot[] wheel = new Slot[WHEEL_SIZE];
+    private final Map<Purchase, Reservation> scheduled = new HashMap<>();
+    private long tick;
+    private final Thread scheduler;
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new ReservationExpiry, schedules the pending purchases already loaded and
+     * starts the scheduler thread. Purchases already older than the time-to-live expire on
+     * the first tick.
+     *
+     * @param context The shared server state; this registers itself for its purchase events.
+     * @param ttl     How long a purchase may stay pending.
+     */
+    public ReservationExpiry(SOMSContext context, Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("Reservation time-to-live must be positive.");
+        }
+        this.context = context;
+        this.ttlNanos = ttl.toNanos();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Slot();
+        }
+
+        int count = 0;
+        for (Map.Entry<String, Map<Integer, Purchase>> entry : context.getPurchases().entrySet()) {
+            // Archived purchases are never pending, so they are not decoded
+            Collection<Purchase> candidates = entry.getValue() instanceof ArchivedPurchaseMap
+                    ? ((ArchivedPurchaseMap) entry.getValue()).pendingPurchases() : entry.getValue().values();
+            for (Purchase purchase : candidates) {
+                if (purchase.getStatusCode() == Purchase.PENDING) {
+                    incoming.add(new Reservation(purchase, entry.getKey()));
+                    count++;
+                }
+            }
+        }
+        context.getPurchaseEvents().addListener(this);
+
+        scheduler = new Thread(this::run, "reservation-expiry");
+        scheduler.setDaemon(true);
+        scheduler.start();
+        logger.info("Reservation expiry started with a time-to-live of " + ttl + "; " + count + " pending purchases scheduled.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        if (purchase.getStatusCode() == Purchase.PENDING) {
+            incoming.add(new Reservation(purchase, purchase.getUserID()));
+        }
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        completed.add(purchase);
+    }
+
+    /**
+     * Stops the scheduler thread. Reservations still outstanding stay pending.
+     */
+    public void shutdown() {
+        running = false;
+        scheduler.interrupt();
+    }
+
+    private void run() {
+        long nextTick = System.nanoTime() + TICK_NANOS;
+        while (running) {
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            nextTick += TICK_NANOS;
+            try {
+                schedule();
+                unschedule();
+                expire(wheel[(int) (tick & (WHEEL_SIZE - 1))]);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Reservation expiry tick failed: ", e);
+            }
+            tick++;
+        }
+        logger.info("Reservation expiry stopped.");
+    }
+
+    /**
+     * Moves newly queued reservations into the slot of the tick they are due at.
+     */
+    private void schedule() {
+        long now = now();
+        Reservation reservation;
+        while ((reservation = incoming.poll()) != null) {
+            if (reservation.purchase.getStatusCode() != Purchase.PENDING) {
+                continue;
+            }
+            long remaining = reservation.purchase.getPurchaseDate() == null
+                    ? ttlNanos : reservation.purchase.getPurchaseTime() + ttlNanos - now;
+            // Anything already due goes in the slot processed this tick
+            reservation.deadlineTick = tick + Math.max(0, (remaining + TICK_NANOS - 1) / TICK_NANOS);
+            wheel[(int) (reservation.deadlineTick & (WHEEL_SIZE - 1))].add(reservation);
+            scheduled.put(reservation.purchase, reservation);
+        }
+    }
+
+    /**
+     * Takes purchases completed by their seller out of their slots, so the wheel does not keep
+     * them alive until their deadline. A completion seen before its reservation was scheduled
+     * is dropped by {@link #schedule()} instead.
+     */
+    private void unschedule() {
+        Purchase purchase;
+        while ((purchase = completed.poll()) != null) {
+            Reservation reservation = scheduled.remove(purchase);
+            if (reservation != null) {
+                wheel[(int) (reservation.deadlineTick & (WHEEL_SIZE - 1))].remove(reservation);
+            }
+        }
+    }
+
+    /**
+     * Expires the reservations in a slot that are due this turn, and drops any completed since
+     * the last tick. Reservations due on a later turn stay in the slot.
+     */
+    private void expire(Slot slot) {
+        int expired = 0;
+        int kept = 0;
+        for (int i = 0; i < slot.size; i++) {
+            Reservation reservation = slot.reservations[i];
+            if (reservation.purchase.getStatusCode() != Purchase.PENDING) {
+                scheduled.remove(reservation.purchase);
+                continue;
+            }
+            if (reservation.deadlineTick > tick) {
+                reservation.position = kept;
+                slot.reservations[kept++] = reservation;
+                continue;
+            }
+            scheduled.remove(reservation.purchase);
+            if (release(reservation)) {
+                expired++;
+            }
+        }
+        slot.truncate(kept);
+
+        if (expired > 0) {
+            SOMSUtils.saveAllData(context.getUsers(), context.getAccounts(), context.getItems(), context.getPurchases());
+            logger.info("Expired " + expired + " pending purchases.");
+        }
+    }
+
+    /**
+     * Releases one reservation on the partition that owns its item, as a seller's
+     * 'unfulfilled' completion would.
+     *
+     * @return True if the purchase was still pending and has been released.
+     */
+    private boolean release(Reservation reservation) {
+        Purchase purchase = reservation.purchase;
+        String itemKey = purchase.getItemName() == null ? "" : purchase.getItemName().toLowerCase();
+        OrderResult result = context.getEngine().execute(itemKey, () -> {
+            synchronized (purchase) {
+                if (purchase.getStatusCode() != Purchase.PENDING) {
+                    return OrderResult.failure("Purchase already processed.");
+                }
+                OrderResult outcome = context.getReservations().release(purchase, reservation.buyerID);
+                if (outcome.isSuccess()) {
+                    context.getPurchaseEvents().purchaseCompleted(purchase);
+                    logger.info("Purchase ID " + purchase.getPurchaseId() + " for Buyer ID " + reservation.buyerID
+                            + " expired after " + Duration.ofNanos(ttlNanos) + " pending.");
+                }
+                return outcome;
+            }
+        });
+        return result.isSuccess();
+    }
+
+    /**
+     * Gets the current time in the encoding purchase dates use: local date-time read as UTC.
+     *
+     * @return Nanoseconds since the epoch.
+     */
+    private static long now() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + now.getNano();
+    }
+
+    /**
+     * A pending purchase and the buyer it is filed under.
+     */
+    private static final class Reservation {
+        final Purchase purchase;
+        final String buyerID;
+        long deadlineTick;
+        int position; // Index in its slot
+
+        Reservation(Purchase purchase, String buyerID) {
+            this.purchase = purchase;
+            this.buyerID = buyerID;
+        }
+    }
+
+    /**
+     * The reservations hashed to one slot of the wheel.
+     */
+    private static final class Slot {
+        Reservation[] reservations = new Reservation[0];
+        int size;
+
+        void add(Reservation reservation) {
+            if (size == reservations.length) {
+                reservations = Arrays.copyOf(reservations, Math.max(4, size * 2));
+            }
+            reservation.position = size;
+            reservations[size++] = reservation;
+        }
+
+        void remove(Reservation reservation) {
+            Reservation last = reservations[--size];
+            reservations[reservation.position] = last;
+            last.position = reservation.position;
+            reservations[size] = null;
+        }
+
+        void truncate(int newSize) {
+            Arrays.fill(reservations, newSize, size, null);
+            size = newSize;
+            // Give back memory after a burst
+            if (reservations.length > 64 && size < reservations.length / 4) {
+                reservations = Arrays.copyOf(reservations, Math.max(4, size * 2));
+            }
+        }
+    }
+}
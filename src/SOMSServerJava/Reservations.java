@@ -0,0 +1,83 @@
+package SOMSServerJava;
+
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Reservations releases what a pending purchase holds: the buyer's reserved funds and the
+ * reserved stock. It is shared by sellers marking a purchase unfulfilled and by reservation
+ * expiry, so both undo a reservation the same way.
+ */
+public class Reservations {
+    private static final Logger logger = Logger.getLogger(Reservations.class.getName());
+
+    private final Map<String, User> users;
+    private final Map<Integer, Account> accounts;
+    private final Map<String, Item> items;
+    private final CatalogEvents catalogEvents;
+
+    /**
+     * Constructs a new Reservations.
+     *
+     * @param users         Map of userID to User objects.
+     * @param accounts      Map of accountNumber to Account objects.
+     * @param items         Map of itemName to Item objects.
+     * @param catalogEvents The events to announce restocked items on.
+     */
+    public Reservations(Map<String, User> users, Map<Integer, Account> accounts,
+                        Map<String, Item> items, CatalogEvents catalogEvents) {
+        this.users = users;
+        this.accounts = accounts;
+        this.items = items;
+        this.catalogEvents = catalogEvents;
+    }
+
+    /**
+     * Returns a pending purchase's funds to the buyer, marks it unfulfilled and restocks the item.
+     * The caller must hold the purchase's monitor and have checked that it is still pending.
+     *
+     * @param purchase The pending purchase.
+     * @param buyerID  The ID of the buyer the purchase is filed under.
+     * @return The outcome; a failure leaves the purchase unchanged.
+     */
+    public OrderResult release(Purchase purchase, String buyerID) {
+        double amount = purchase.getTotalCost();
+
+        // Get customer information
+        User customer = buyerID == null ? null : users.get(buyerID);
+        if (customer == null) {
+            logger.severe("Buyer ID " + buyerID + " not found.");
+            return OrderResult.failure("Buyer ID not found.");
+        }
+
+        // Get customer's account number and validate account exists
+        int customerAccountNumber = customer.getAccountNumber();
+        Account customerAccount = accounts.get(customerAccountNumber);
+        if (customerAccount == null) {
+            logger.severe("Customer account number " + customerAccountNumber + " for Buyer ID " + buyerID + " not found.");
+            return OrderResult.failure("Customer account not found.");
+        }
+
+        // Return funds to customer's account
+        synchronized (customerAccount) {
+            customerAccount.releaseFunds(amount);
+        }
+        logger.info("Released $" + String.format("%.2f", amount) + " to Customer account number " + customerAccountNumber + ".");
+
+        // Update purchase status
+        purchase.setStatus("unfulfilled");
+        purchase.setSellerID("unfulfilled"); // Indicates unfulfilled status
+        logger.info("Updated Purchase ID " + purchase.getPurchaseId() + " status to 'unfulfilled'.");
+
+        // Restore item quantity in inventory; the item's own monitor guards the update
+        Item item = purchase.getItemName() == null ? null : items.get(purchase.getItemName().toLowerCase());
+        if (item != null) {
+            item.increaseQuantity(purchase.getQuantity());
+            catalogEvents.itemChanged(item);
+            logger.info("Restored quantity for item: " + purchase.getItemName() + ", Quantity: " + purchase.getQuantity());
+        } else {
+            logger.warning("Item \"" + purchase.getItemName() + "\" not found during quantity restoration.");
+        }
+        return OrderResult.success("$" + String.format("%.2f", amount) + " returned to the customer.");
+    }
+}
@@ -1,11 +1,16 @@
 package SOMSServerJava;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.*;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -16,9 +21,29 @@ import com.google.gson.reflect.TypeToken;
  */
 public class SOMS {
     private static final int PORT = 12345;
+    // Engine mode: "direct" (default) or "partitioned", e.g. -Dsoms.engine=partitioned
+    private static final String ENGINE_MODE = System.getProperty("soms.engine", "direct");
+    private static final int ENGINE_PARTITIONS = Integer.getInteger("soms.partitions",
+            Runtime.getRuntime().availableProcessors());
+    // Purchase storage: "heap" (default) or "offheap" to archive completed purchases, e.g. -Dsoms.purchases=offheap
+    private static final String PURCHASE_STORAGE = System.getProperty("soms.purchases", "heap");
+    // Minutes a purchase may stay pending before it expires; 0 (default) keeps it until completed,
+    // e.g. -Dsoms.reservationTtl=1440
+    private static final long RESERVATION_TTL_MINUTES = Long.getLong("soms.reservationTtl", 0);
+    // Milliseconds between settlements of seller credits, e.g. -Dsoms.settlementInterval=500
+    private static final long SETTLEMENT_INTERVAL_MILLIS = Long.getLong("soms.settlementInterval", 1000);
+    // Seconds between logged metrics snapshots; 0 turns them off, e.g. -Dsoms.metricsInterval=10
+    private static final long METRICS_INTERVAL_SECONDS = Long.getLong("soms.metricsInterval", 60);
+    // Log records buffered for the log writer thread, and what to do when the buffer is full:
+    // "block" (default) or "drop", e.g. -Dsoms.logBuffer=8192 -Dsoms.logOverflow=drop
+    private static final int LOG_BUFFER_CAPACITY = Integer.getInteger("soms.logBuffer", 8192);
+    private static final String LOG_OVERFLOW = System.getProperty("soms.logOverflow", "block");
+    // Size in megabytes at which soms.log is rotated, and how many files to keep, e.g. -Dsoms.logMaxMb=50
+    private static final long LOG_MAX_MB = Long.getLong("soms.logMaxMb", 10);
+    private static final int LOG_FILES = Integer.getInteger("soms.logFiles", 5);
     private static final Logger logger = Logger.getLogger(SOMS.class.getName());
     private final Map<String, User> users = new ConcurrentHashMap<>();
-    private final Map<Integer, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<Integer, Account> accounts = new IntHashMap<>();
     private final Map<String, Item> items = new ConcurrentHashMap<>();
     private final Map<String, Map<Integer, Purchase>> purchases = new ConcurrentHashMap<>();
 
@@ -62,43 +87,113 @@ public class SOMS {
             return;
         }
 
+        OrderEngine engine = createEngine();
+        SOMSContext context = new SOMSContext(users, accounts, items, purchases, engine,
+                PURCHASE_STORAGE.equalsIgnoreCase("offheap"));
+        context.getSettlementLedger().start(Duration.ofMillis(SETTLEMENT_INTERVAL_MILLIS));
+        if (METRICS_INTERVAL_SECONDS > 0) {
+            Metrics.get().start(Duration.ofSeconds(METRICS_INTERVAL_SECONDS));
+        }
+        ReservationExpiry reservationExpiry = RESERVATION_TTL_MINUTES > 0
+                ? new ReservationExpiry(context, Duration.ofMinutes(RESERVATION_TTL_MINUTES)) : null;
+        ObjectName statusName = registerStatus(context);
+
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             logger.info("Server starting on port " + PORT);
             logger.info("Server started. Waiting for clients...");
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                ClientHandler handler = new ClientHandler(clientSocket, users, accounts, items, purchases);
+                ClientHandler handler = new ClientHandler(clientSocket, context);
                 Thread clientThread = new Thread(handler);
                 clientThread.start();
             }
 
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Server error: ", e);
+        } finally {
+            if (reservationExpiry != null) {
+                reservationExpiry.shutdown();
+            }
+            engine.shutdown();
+            context.getSettlementLedger().shutdown();
+            Metrics.get().shutdown();
+            unregisterStatus(statusName);
+        }
+    }
+
+    /**
+     * Registers the server's ServerStatus MBean with the platform MBean server.
+     *
+     * @param context The shared server state.
+     * @return The name it was registered under, or null if registration failed.
+     */
+    private ObjectName registerStatus(SOMSContext context) {
+        try {
+            ObjectName name = new ObjectName(ServerStatus.OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ServerStatus(context), name);
+            logger.info("Registered MBean " + name + ".");
+            return name;
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Failed to register the server status MBean: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * Unregisters the server's ServerStatus MBean.
+     *
+     * @param name The name returned by {@link #registerStatus(SOMSContext)}; null is ignored.
+     */
+    private void unregisterStatus(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbeanServer.unregisterMBean(name);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Failed to unregister MBean " + name + ": ", e);
+        }
+    }
+
+    /**
+     * Creates the order engine selected by the soms.engine system property.
+     *
+     * @return The order engine to use.
+     */
+    private OrderEngine createEngine() {
+        if (ENGINE_MODE.equalsIgnoreCase("partitioned")) {
+            return new OrderEngine(OrderEngine.Mode.PARTITIONED, ENGINE_PARTITIONS);
+        }
+        if (!ENGINE_MODE.equalsIgnoreCase("direct")) {
+            logger.warning("Unknown engine mode '" + ENGINE_MODE + "'. Falling back to direct mode.");
         }
+        return new OrderEngine(OrderEngine.Mode.DIRECT, 0);
     }
 
     /**
-     * Sets up the logger to log messages to both the console and a file.
+     * Sets up the logger to log messages to both the console and a file. Records are written
+     * by an AsyncLogHandler, so logging threads never wait on file or console I/O unless the
+     * buffer is full and the overflow policy is "block".
      */
     private void setupLogger() {
         try {
             LogManager.getLogManager().reset();
             Logger rootLogger = Logger.getLogger("");
 
-            // Console handler
+            // Console handler, fed by the log writer thread
             ConsoleHandler consoleHandler = new ConsoleHandler();
             consoleHandler.setLevel(Level.INFO);
-            rootLogger.addHandler(consoleHandler);
 
             // File handler
-            FileHandler fileHandler = new FileHandler("soms.log", true);
-            fileHandler.setLevel(Level.INFO);
-            fileHandler.setFormatter(new SimpleFormatter());
-            rootLogger.addHandler(fileHandler);
+            AsyncLogHandler logHandler = new AsyncLogHandler("soms.log", LOG_MAX_MB * 1024 * 1024, LOG_FILES,
+                    LOG_BUFFER_CAPACITY, AsyncLogHandler.OverflowPolicy.parse(LOG_OVERFLOW), consoleHandler);
+            logHandler.setLevel(Level.INFO);
+            rootLogger.addHandler(logHandler);
 
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             logger.log(Level.SEVERE, "Failed to setup logger: ", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package SOMSServerJava;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SOMSContext holds the shared server state that every ClientHandler works against.
+ */
+public class SOMSContext {
+    private final Map<String, User> users;
+    private final IntHashMap<Account> accounts;
+    private final Map<String, Item> items;
+    private final Map<String, Map<Integer, Purchase>> purchases;
+    private final OrderEngine engine;
+    private final PurchaseIdAllocator purchaseIdAllocator;
+    private final PurchaseEvents purchaseEvents = new PurchaseEvents();
+    private final PurchaseArchive purchaseArchive;
+    private final SellerIndex sellerIndex;
+    private final SellerStatsCache sellerStatsCache;
+    private final BuyerIndex buyerIndex;
+    private final SellerLeaderboard sellerLeaderboard;
+    private final PurchaseAggregates purchaseAggregates;
+    private final SalesRollups salesRollups;
+    private final NotificationHub notificationHub = new NotificationHub();
+    private final CatalogEvents catalogEvents = new CatalogEvents();
+    private final Reservations reservations;
+    private final SettlementLedger settlementLedger;
+    private final CatalogCache catalogCache;
+    private final CatalogIndex catalogIndex;
+    // Client connections currently being served
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    /**
+     * Constructs a new SOMSContext.
+     *
+     * @param users     Map of userID to User objects.
+     * @param accounts  Map of accountNumber to Account objects.
+     * @param items     Map of itemName to Item objects.
+     * @param purchases Map of userID to their purchases.
+     * @param engine    The engine that applies order commands.
+     */
+    public SOMSContext(Map<String, User> users, Map<Integer, Account> accounts,
+                       Map<String, Item> items, Map<String, Map<Integer, Purchase>> purchases,
+                       OrderEngine engine) {
+        this(users, accounts, items, purchases, engine, false);
+    }
+
+    /**
+     * Constructs a new SOMSContext, optionally keeping completed purchases off-heap.
+     *
+     * @param users            Map of userID to User objects.
+     * @param accounts         Map of accountNumber to Account objects; copied into an
+     *                         {@link IntHashMap} unless it already is one.
+     * @param items            Map of itemName to Item objects.
+     * @param purchases        Map of userID to their purchases.
+     * @param engine           The engine that applies order commands.
+     * @param archivePurchases True to move completed purchases into a {@link PurchaseArchive}.
+     */
+    public SOMSContext(Map<String, User> users, Map<Integer, Account> accounts,
+                       Map<String, Item> items, Map<String, Map<Integer, Purchase>> purchases,
+                       OrderEngine engine, boolean archivePurchases) {
+        this.users = users;
+        this.accounts = accounts instanceof IntHashMap ? (IntHashMap<Account>) accounts : new IntHashMap<>(accounts);
+        this.items = items;
+        this.purchases = purchases;
+        this.engine = engine;
+        // The archive replaces each buyer's map, so it must come before anything reads them
+        this.purchaseArchive = archivePurchases ? new PurchaseArchive(purchases) : null;
+        if (purchaseArchive != null) {
+            purchaseEvents.addListener(purchaseArchive);
+        }
+        this.purchaseIdAllocator = new PurchaseIdAllocator(purchases);
+
+        // Derived structures are built once from the loaded data, then kept in step by events
+        this.sellerIndex = new SellerIndex(purchases, purchaseArchive);
+        purchaseEvents.addListener(sellerIndex);
+        this.sellerStatsCache = new SellerStatsCache(sellerIndex);
+        this.buyerIndex = new BuyerIndex(purchases, purchaseArchive);
+        purchaseEvents.addListener(buyerIndex);
+        this.sellerLeaderboard = new SellerLeaderboard(purchases, Duration.ofDays(7));
+        purchaseEvents.addListener(sellerLeaderboard);
+        this.purchaseAggregates = new PurchaseAggregates(purchases);
+        purchaseEvents.addListener(purchaseAggregates);
+        this.salesRollups = new SalesRollups(purchases);
+        purchaseEvents.addListener(salesRollups);
+        purchaseEvents.addListener(notificationHub);
+        this.reservations = new Reservations(users, this.accounts, items, catalogEvents);
+        this.settlementLedger = new SettlementLedger(users, this.accounts, items, purchases);
+        settlementLedger.recover();
+        this.catalogCache = new CatalogCache(items);
+        catalogEvents.addListener(catalogCache);
+        this.catalogIndex = new CatalogIndex(items);
+        catalogEvents.addListener(catalogIndex);
+    }
+
+    public Map<String, User> getUsers() {
+        return users;
+    }
+
+    public IntHashMap<Account> getAccounts() {
+        return accounts;
+    }
+
+    public Map<String, Item> getItems() {
+        return items;
+    }
+
+    public Map<String, Map<Integer, Purchase>> getPurchases() {
+        return purchases;
+    }
+
+    public OrderEngine getEngine() {
+        return engine;
+    }
+
+    public PurchaseIdAllocator getPurchaseIdAllocator() {
+        return purchaseIdAllocator;
+    }
+
+    /**
+     * Gets the off-heap purchase archive.
+     *
+     * @return The archive, or null if purchases are kept on the heap.
+     */
+    public PurchaseArchive getPurchaseArchive() {
+        return purchaseArchive;
+    }
+
+    public PurchaseEvents getPurchaseEvents() {
+        return purchaseEvents;
+    }
+
+    public SellerIndex getSellerIndex() {
+        return sellerIndex;
+    }
+
+    public SellerStatsCache getSellerStatsCache() {
+        return sellerStatsCache;
+    }
+
+    public BuyerIndex getBuyerIndex() {
+        return buyerIndex;
+    }
+
+    public SellerLeaderboard getSellerLeaderboard() {
+        return sellerLeaderboard;
+    }
+
+    public PurchaseAggregates getPurchaseAggregates() {
+        return purchaseAggregates;
+    }
+
+    public SalesRollups getSalesRollups() {
+        return salesRollups;
+    }
+
+    public NotificationHub getNotificationHub() {
+        return notificationHub;
+    }
+
+    public Reservations getReservations() {
+        return reservations;
+    }
+
+    public SettlementLedger getSettlementLedger() {
+        return settlementLedger;
+    }
+
+    public CatalogEvents getCatalogEvents() {
+        return catalogEvents;
+    }
+
+    public CatalogCache getCatalogCache() {
+        return catalogCache;
+    }
+
+    public CatalogIndex getCatalogIndex() {
+        return catalogIndex;
+    }
+
+    public AtomicInteger getActiveSessions() {
+        return activeSessions;
+    }
+}
@@ -43,6 +43,9 @@ public class SOMSServer {
      * Starts the server and listens for client connections.
      */
     public void start() {
+        SOMSContext context = new SOMSContext(users, accounts, items, purchases,
+                new OrderEngine(OrderEngine.Mode.DIRECT, 0));
+
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             logger.info("SOMSServer started. Listening on port " + PORT + ".");
 
@@ -51,7 +54,7 @@ public class SOMSServer {
                 logger.info("New client connected from " + clientSocket.getInetAddress());
 
                 // Create a new ClientHandler thread for each client
-                ClientHandler clientHandler = new ClientHandler(clientSocket, users, accounts, items, purchases);
+                ClientHandler clientHandler = new ClientHandler(clientSocket, context);
                 Thread thread = new Thread(clientHandler);
                 thread.start();
             }
@@ -20,6 +20,7 @@ public class SOMSUtils {
     private static final Gson gson = new GsonBuilder()
             .setPrettyPrinting()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapter(Purchase.class, new PurchaseAdapter())
             .create();
 
     /**
@@ -55,18 +56,17 @@ public class SOMSUtils {
     public static Map<Integer, Account> loadAccounts(String filename) {
         try (Reader reader = new FileReader(filename)) {
             Type type = new TypeToken<ConcurrentHashMap<Integer, Account>>() {}.getType();
-            Map<Integer, Account> accounts = gson.fromJson(reader, type);
-            if (accounts == null) {
-                accounts = new ConcurrentHashMap<>();
-            }
+            Map<Integer, Account> loaded = gson.fromJson(reader, type);
+            // Held in an int-keyed map so account lookups do not box
+            Map<Integer, Account> accounts = loaded == null ? new IntHashMap<>() : new IntHashMap<>(loaded);
             logger.info("Loaded " + accounts.size() + " accounts from " + filename + ".");
             return accounts;
         } catch (FileNotFoundException e) {
             logger.warning("Accounts file not found. Creating a new accounts map.");
-            return new ConcurrentHashMap<>();
+            return new IntHashMap<>();
         } catch (IOException e) {
             logger.severe("Error reading accounts file: " + e.getMessage());
-            return new ConcurrentHashMap<>();
+            return new IntHashMap<>();
         }
     }
 
@@ -107,6 +107,8 @@ public class SOMSUtils {
             if (purchases == null) {
                 purchases = new ConcurrentHashMap<>();
             }
+            // Each buyer's purchases are held in an int-keyed map so ID lookups do not box
+            purchases.replaceAll((buyerID, buyerPurchases) -> new IntHashMap<>(buyerPurchases));
             logger.info("Loaded purchases for " + purchases.size() + " buyers from " + filename + ".");
             return purchases;
         } catch (FileNotFoundException e) {
@@ -130,10 +132,12 @@ public class SOMSUtils {
                                    Map<Integer, Account> accounts,
                                    Map<String, Item> items,
                                    Map<String, Map<Integer, Purchase>> purchases) {
+        long start = System.nanoTime();
         saveData(users, "users.json");
         saveData(accounts, "accounts.json");
         saveData(items, "items.json");
         saveData(purchases, "purchases.json");
+        Metrics.get().recordPersistence(System.nanoTime() - start);
     }
 
     /**
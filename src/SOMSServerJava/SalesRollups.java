@@ -0,0 +1,358 @@
+package SOMSServerJava;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * SalesRollups keeps per-minute and per-hour sales figures, overall and per item, for the last
+ * hour and the last day.
+ * <p>
+ * Each series is a fixed-size ring of buckets indexed by minute or hour number. A bucket is
+ * claimed for a new period with a compare-and-set and its counters are adders, so recording
+ * an event never takes a lock; reading a window walks at most one ring.
+ * <p>
+ * Orders are counted at their purchase date, which lets the rings be seeded from the loaded
+ * purchases. Fulfilment and its latency are counted when the seller completes the purchase;
+ * completions from before a restart are not recovered.
+ */
+public class SalesRollups implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(SalesRollups.class.getName());
+    public static final int MINUTES = 60;
+    public static final int HOURS = 24;
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+    private static final long NANOS_PER_HOUR = 60 * NANOS_PER_MINUTE;
+
+    /**
+     * The bucket sizes the rollups are kept at.
+     */
+    public enum Resolution {
+        MINUTE(NANOS_PER_MINUTE, MINUTES),
+        HOUR(NANOS_PER_HOUR, HOURS);
+
+        private final long bucketNanos;
+        private final int buckets;
+
+        Resolution(long bucketNanos, int buckets) {
+            this.bucketNanos = bucketNanos;
+            this.buckets = buckets;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+    }
+
+    private final Series overallMinutes = new Series(Resolution.MINUTE);
+    private final Series overallHours = new Series(Resolution.HOUR);
+    private final Map<String, Series> itemMinutes = new ConcurrentHashMap<>();
+    private final Map<String, Series> itemHours = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs new SalesRollups, seeding the order counts from the loaded purchases
+     * placed within the last day.
+     *
+     * @param purchases Map of userID to their purchases.
+     */
+    public SalesRollups(Map<String, Map<Integer, Purchase>> purchases) {
+        long since = now() - HOURS * NANOS_PER_HOUR;
+        int count = 0;
+        for (Map<Integer, Purchase> userPurchases : purchases.values()) {
+            for (Purchase purchase : userPurchases.values()) {
+                if (purchase.getPurchaseDate() != null && purchase.getPurchaseTime() >= since) {
+                    purchaseCreated(purchase);
+                    count++;
+                }
+            }
+        }
+        logger.info("Seeded sales rollups with " + count + " purchases from the last " + HOURS + " hours.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        long time = purchase.getPurchaseDate() == null ? now() : purchase.getPurchaseTime();
+        String itemKey = keyOf(purchase.getItemName());
+        for (Series series : seriesFor(itemKey)) {
+            series.bucketAt(time).recordOrder(purchase.getTotalCostCents());
+        }
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        long time = now();
+        byte status = purchase.getStatusCode();
+        long latency = purchase.getPurchaseDate() == null ? -1 : Math.max(0, time - purchase.getPurchaseTime());
+        String itemKey = keyOf(purchase.getItemName());
+        for (Series series : seriesFor(itemKey)) {
+            Bucket bucket = series.bucketAt(time);
+            if (status == Purchase.FULFILLED) {
+                bucket.recordFulfilled(purchase.getTotalCostCents(), latency);
+            } else if (status == Purchase.UNFULFILLED) {
+                bucket.recordUnfulfilled(latency);
+            }
+        }
+    }
+
+    /**
+     * Returns the rollups over the whole ring for the given resolution, oldest bucket first:
+     * the last hour by minute or the last day by hour.
+     *
+     * @param resolution The bucket size.
+     * @param itemName   The item to report on, or null for all items.
+     * @return The window, with an entry per bucket in the ring (empty buckets included).
+     */
+    public Window window(Resolution resolution, String itemName) {
+        Series series;
+        if (itemName == null) {
+            series = resolution == Resolution.MINUTE ? overallMinutes : overallHours;
+        } else {
+            series = (resolution == Resolution.MINUTE ? itemMinutes : itemHours).get(keyOf(itemName));
+        }
+
+        long current = Math.floorDiv(now(), resolution.bucketNanos);
+        List<Rollup> rollups = new ArrayList<>(resolution.buckets);
+        for (long period = current - resolution.buckets + 1; period <= current; period++) {
+            Bucket bucket = series == null ? null : series.bucketFor(period);
+            rollups.add(new Rollup(toDate(period * resolution.bucketNanos), bucket));
+        }
+        return new Window(rollups);
+    }
+
+    private List<Series> seriesFor(String itemKey) {
+        List<Series> series = new ArrayList<>(4);
+        series.add(overallMinutes);
+        series.add(overallHours);
+        if (itemKey != null) {
+            series.add(itemMinutes.computeIfAbsent(itemKey, k -> new Series(Resolution.MINUTE)));
+            series.add(itemHours.computeIfAbsent(itemKey, k -> new Series(Resolution.HOUR)));
+        }
+        return series;
+    }
+
+    private static String keyOf(String itemName) {
+        return itemName == null ? null : itemName.toLowerCase();
+    }
+
+    /**
+     * Gets the current time in the encoding purchase dates use: local date-time read as UTC.
+     *
+     * @return Nanoseconds since the epoch.
+     */
+    private static long now() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + now.getNano();
+    }
+
+    private static LocalDateTime toDate(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * A ring of buckets for one resolution.
+     */
+    private static final class Series {
+        private final Resolution resolution;
+        private final AtomicReferenceArray<Bucket> ring;
+
+        Series(Resolution resolution) {
+            this.resolution = resolution;
+            this.ring = new AtomicReferenceArray<>(resolution.buckets);
+        }
+
+        /**
+         * Gets the bucket for the period containing a time, claiming its slot if the slot
+         * still holds an older period. Events older than the ring go to a detached bucket.
+         */
+        Bucket bucketAt(long time) {
+            long period = Math.floorDiv(time, resolution.bucketNanos);
+            int slot = (int) Math.floorMod(period, (long) resolution.buckets);
+            while (true) {
+                Bucket bucket = ring.get(slot);
+                if (bucket != null && bucket.period >= period) {
+                    return bucket.period == period ? bucket : new Bucket(period);
+                }
+                Bucket claimed = new Bucket(period);
+                if (ring.compareAndSet(slot, bucket, claimed)) {
+                    return claimed;
+                }
+            }
+        }
+
+        /**
+         * Gets the bucket for a period if the ring still holds it.
+         */
+        Bucket bucketFor(long period) {
+            Bucket bucket = ring.get((int) Math.floorMod(period, (long) resolution.buckets));
+            return bucket != null && bucket.period == period ? bucket : null;
+        }
+    }
+
+    /**
+     * The counters for one period.
+     */
+    private static final class Bucket {
+        final long period;
+        final LongAdder orders = new LongAdder();
+        final LongAdder orderedCents = new LongAdder();
+        final LongAdder fulfilled = new LongAdder();
+        final LongAdder revenueCents = new LongAdder();
+        final LongAdder unfulfilled = new LongAdder();
+        final LongAdder latencyCount = new LongAdder();
+        final LongAdder latencyNanos = new LongAdder();
+        final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        Bucket(long period) {
+            this.period = period;
+        }
+
+        void recordOrder(long cents) {
+            orders.increment();
+            orderedCents.add(cents);
+        }
+
+        void recordFulfilled(long cents, long latency) {
+            fulfilled.increment();
+            revenueCents.add(cents);
+            recordLatency(latency);
+        }
+
+        void recordUnfulfilled(long latency) {
+            unfulfilled.increment();
+            recordLatency(latency);
+        }
+
+        private void recordLatency(long latency) {
+            if (latency >= 0) {
+                latencyCount.increment();
+                latencyNanos.add(latency);
+                maxLatencyNanos.accumulate(latency);
+            }
+        }
+    }
+
+    /**
+     * A read-only copy of one bucket.
+     */
+    public static final class Rollup {
+        private final LocalDateTime start;
+        private long orders;
+        private long orderedCents;
+        private long fulfilled;
+        private long revenueCents;
+        private long unfulfilled;
+        private long latencyCount;
+        private long latencyNanos;
+        private long maxLatencyNanos;
+
+        private Rollup(LocalDateTime start, Bucket bucket) {
+            this.start = start;
+            if (bucket != null) {
+                orders = bucket.orders.sum();
+                orderedCents = bucket.orderedCents.sum();
+                fulfilled = bucket.fulfilled.sum();
+                revenueCents = bucket.revenueCents.sum();
+                unfulfilled = bucket.unfulfilled.sum();
+                latencyCount = bucket.latencyCount.sum();
+                latencyNanos = bucket.latencyNanos.sum();
+                maxLatencyNanos = bucket.maxLatencyNanos.get();
+            }
+        }
+
+        private Rollup(LocalDateTime start) {
+            this.start = start;
+        }
+
+        /**
+         * Gets the start of the bucket's period.
+         *
+         * @return The start, or null for a window total.
+         */
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public long getOrderedCents() {
+            return orderedCents;
+        }
+
+        public long getFulfilled() {
+            return fulfilled;
+        }
+
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+
+        public long getUnfulfilled() {
+            return unfulfilled;
+        }
+
+        /**
+         * Gets the average time from purchase to completion.
+         *
+         * @return The average in seconds, or NaN if nothing was completed.
+         */
+        public double getAverageLatencySeconds() {
+            return latencyCount == 0 ? Double.NaN : latencyNanos / 1e9 / latencyCount;
+        }
+
+        /**
+         * Gets the longest time from purchase to completion.
+         *
+         * @return The maximum in seconds, or NaN if nothing was completed.
+         */
+        public double getMaxLatencySeconds() {
+            return latencyCount == 0 ? Double.NaN : maxLatencyNanos / 1e9;
+        }
+
+        public boolean isEmpty() {
+            return orders == 0 && fulfilled == 0 && unfulfilled == 0;
+        }
+
+        private void add(Rollup other) {
+            orders += other.orders;
+            orderedCents += other.orderedCents;
+            fulfilled += other.fulfilled;
+            revenueCents += other.revenueCents;
+            unfulfilled += other.unfulfilled;
+            latencyCount += other.latencyCount;
+            latencyNanos += other.latencyNanos;
+            maxLatencyNanos = Math.max(maxLatencyNanos, other.maxLatencyNanos);
+        }
+    }
+
+    /**
+     * The buckets of one ring, oldest first, with their total.
+     */
+    public static final class Window {
+        private final List<Rollup> rollups;
+        private final Rollup total = new Rollup(null);
+
+        private Window(List<Rollup> rollups) {
+            this.rollups = rollups;
+            for (Rollup rollup : rollups) {
+                total.add(rollup);
+            }
+        }
+
+        public List<Rollup> getRollups() {
+            return rollups;
+        }
+
+        public Rollup getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package SOMSServerJava;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * SellerIndex maps each seller to the purchases of their items, ordered by purchase date,
+ * with a separate view holding only the purchases that are still pending.
+ * Sellers are keyed by the lowercase sellerID recorded when the purchase was made.
+ * <p>
+ * When purchases are archived off-heap, only pending purchases are held here and reads return
+ * a view merging them with the seller's date-ordered rows in the {@link PurchaseArchive}.
+ */
+public class SellerIndex implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(SellerIndex.class.getName());
+
+    private final Map<String, NavigableSet<Purchase>> bySeller = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Purchase>> pendingBySeller = new ConcurrentHashMap<>();
+    // Seller key each pending purchase was filed under; completion may overwrite its sellerID
+    private final Map<Purchase, String> pendingOwners = new ConcurrentHashMap<>();
+    private final PurchaseArchive archive;
+    // Bumped after every change to a seller's purchases
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new SellerIndex and builds it from the loaded purchases.
+     *
+     * @param purchases Map of userID to their purchases.
+     */
+    public SellerIndex(Map<String, Map<Integer, Purchase>> purchases) {
+        this(purchases, null);
+    }
+
+    /**
+     * Constructs a new SellerIndex over purchases whose completed history may be archived.
+     *
+     * @param purchases Map of userID to their purchases.
+     * @param archive   The archive holding completed purchases, or null if they stay on the heap.
+     */
+    public SellerIndex(Map<String, Map<Integer, Purchase>> purchases, PurchaseArchive archive) {
+        this.archive = archive;
+        int count = 0;
+        for (Map<Integer, Purchase> userPurchases : purchases.values()) {
+            for (Purchase purchase : userPurchases.values()) {
+                purchaseCreated(purchase);
+                count++;
+            }
+        }
+        logger.info("Indexed " + count + " purchases for " + bySeller.size() + " sellers.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        String sellerKey = keyOf(purchase.getSellerID());
+        boolean pending = "pending".equalsIgnoreCase(purchase.getStatus());
+        if (sellerKey == null || (archive != null && !pending)) {
+            return;
+        }
+        bySeller.computeIfAbsent(sellerKey, k -> new ConcurrentSkipListSet<>(Purchase.BY_DATE)).add(purchase);
+        if (pending) {
+            pendingOwners.put(purchase, sellerKey);
+            pendingBySeller.computeIfAbsent(sellerKey, k -> new ConcurrentSkipListSet<>(Purchase.BY_DATE)).add(purchase);
+        }
+        versionOf(sellerKey).incrementAndGet();
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        String sellerKey = pendingOwners.remove(purchase);
+        if (sellerKey != null) {
+            pendingBySeller.get(sellerKey).remove(purchase);
+            if (archive != null) {
+                bySeller.get(sellerKey).remove(purchase);
+            }
+            versionOf(sellerKey).incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a counter that changes whenever a purchase of the seller's is added or completed,
+     * so results derived from the seller's purchases can be cached against it.
+     *
+     * @param sellerID The ID of the seller.
+     * @return The seller's current version.
+     */
+    public long getVersion(String sellerID) {
+        AtomicLong version = sellerID == null ? null : versions.get(keyOf(sellerID));
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Returns every purchase of the seller's items, oldest first.
+     *
+     * @param sellerID The ID of the seller.
+     * @return A live, read-only view of the seller's purchases; when archiving, archived
+     *         purchases completed after this call are not included.
+     */
+    public NavigableSet<Purchase> getPurchases(String sellerID) {
+        NavigableSet<Purchase> view = view(bySeller, sellerID);
+        return archive == null ? view : archive.sellerHistory(sellerID, view);
+    }
+
+    /**
+     * Returns the seller's pending purchases, oldest first.
+     *
+     * @param sellerID The ID of the seller.
+     * @return A live, read-only view of the seller's pending purchases.
+     */
+    public NavigableSet<Purchase> getPendingPurchases(String sellerID) {
+        return view(pendingBySeller, sellerID);
+    }
+
+    private static NavigableSet<Purchase> view(Map<String, NavigableSet<Purchase>> index, String sellerID) {
+        NavigableSet<Purchase> set = sellerID == null ? null : index.get(keyOf(sellerID));
+        if (set == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return Collections.unmodifiableNavigableSet(set);
+    }
+
+    private AtomicLong versionOf(String sellerKey) {
+        return versions.computeIfAbsent(sellerKey, k -> new AtomicLong());
+    }
+
+    private static String keyOf(String sellerID) {
+        return sellerID == null ? null : sellerID.toLowerCase();
+    }
+}
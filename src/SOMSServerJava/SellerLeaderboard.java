@@ -0,0 +1,211 @@
+package SOMSServerJava;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * SellerLeaderboard ranks sellers by fulfilled transactions, by fulfilled revenue and by
+ * fulfilled transactions within a recent time window.
+ * <p>
+ * It is built once from the loaded purchases and then updated in O(log n) whenever a purchase
+ * is fulfilled. Each ranking is a sorted set, so reading the top K sellers costs O(K). Readers
+ * copy the top entries under the same lock as updates, so they never see a seller between its
+ * old and new standing. A sale counts towards the recent window by its purchase date.
+ */
+public class SellerLeaderboard implements PurchaseListener {
+    private static final Logger logger = Logger.getLogger(SellerLeaderboard.class.getName());
+
+    /**
+     * The orderings the leaderboard maintains.
+     */
+    public enum Ranking {
+        FULFILLED,
+        REVENUE,
+        RECENT
+    }
+
+    private final Duration recentWindow;
+    // Guarded by this
+    private final Map<Ranking, NavigableSet<Standing>> rankings = new EnumMap<>(Ranking.class);
+    private final Map<String, Standing> standings = new HashMap<>();
+    private final PriorityQueue<Sale> recentSales = new PriorityQueue<>(Comparator.comparing(Sale::getTime));
+
+    /**
+     * Constructs a new SellerLeaderboard from the loaded purchases.
+     *
+     * @param purchases    Map of userID to their purchases.
+     * @param recentWindow How far back the RECENT ranking looks.
+     */
+    public SellerLeaderboard(Map<String, Map<Integer, Purchase>> purchases, Duration recentWindow) {
+        this.recentWindow = recentWindow;
+        Comparator<Standing> bySeller = Comparator.comparing(Standing::getSellerID);
+        rankings.put(Ranking.FULFILLED, new TreeSet<>(
+                Comparator.comparingInt(Standing::getFulfilledCount).reversed().thenComparing(bySeller)));
+        rankings.put(Ranking.REVENUE, new TreeSet<>(
+                Comparator.comparingDouble(Standing::getRevenue).reversed().thenComparing(bySeller)));
+        rankings.put(Ranking.RECENT, new TreeSet<>(
+                Comparator.comparingInt(Standing::getRecentCount).reversed().thenComparing(bySeller)));
+
+        List<Purchase> fulfilled = new ArrayList<>();
+        for (Map<Integer, Purchase> userPurchases : purchases.values()) {
+            for (Purchase purchase : userPurchases.values()) {
+                if ("fulfilled".equalsIgnoreCase(purchase.getStatus()) && purchase.getSellerID() != null
+                        && purchase.getPurchaseDate() != null) {
+                    fulfilled.add(purchase);
+                }
+            }
+        }
+        fulfilled.sort(Comparator.comparing(Purchase::getPurchaseDate));
+        for (Purchase purchase : fulfilled) {
+            recordSale(purchase.getSellerID(), purchase.getTotalCost(), purchase.getPurchaseDate());
+        }
+        logger.info("Built seller leaderboard from " + fulfilled.size() + " fulfilled purchases.");
+    }
+
+    @Override
+    public void purchaseCreated(Purchase purchase) {
+        // Only fulfilled purchases count towards the leaderboard
+    }
+
+    @Override
+    public void purchaseCompleted(Purchase purchase) {
+        if ("fulfilled".equalsIgnoreCase(purchase.getStatus()) && purchase.getSellerID() != null) {
+            recordSale(purchase.getSellerID(), purchase.getTotalCost(),
+                    purchase.getPurchaseDate() != null ? purchase.getPurchaseDate() : LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Returns the best sellers in the order of the given ranking, reading only as far down the
+     * ranking as it takes to find them.
+     *
+     * @param ranking The ranking to read.
+     * @param count   The maximum number of sellers to return.
+     * @param shown   Which standings to include; others are skipped.
+     * @return A snapshot of up to count standings, best first.
+     */
+    public synchronized List<Standing> top(Ranking ranking, int count, Predicate<Standing> shown) {
+        if (ranking == Ranking.RECENT) {
+            expireRecentSales(LocalDateTime.now());
+        }
+        List<Standing> top = new ArrayList<>(count);
+        for (Standing standing : rankings.get(ranking)) {
+            if (top.size() == count) {
+                break;
+            }
+            if (shown.test(standing)) {
+                top.add(standing);
+            }
+        }
+        return top;
+    }
+
+    public Duration getRecentWindow() {
+        return recentWindow;
+    }
+
+    private synchronized void recordSale(String sellerID, double amount, LocalDateTime time) {
+        String sellerKey = sellerID.toLowerCase();
+        expireRecentSales(LocalDateTime.now());
+
+        Standing current = standings.get(sellerKey);
+        boolean inWindow = !time.isBefore(LocalDateTime.now().minus(recentWindow));
+        Standing updated = current == null
+                ? new Standing(sellerKey, 1, amount, inWindow ? 1 : 0)
+                : new Standing(sellerKey, current.fulfilledCount + 1, current.revenue + amount,
+                current.recentCount + (inWindow ? 1 : 0));
+        replace(current, updated);
+        if (inWindow) {
+            recentSales.add(new Sale(sellerKey, time));
+        }
+    }
+
+    private void expireRecentSales(LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(recentWindow);
+        while (!recentSales.isEmpty() && recentSales.peek().time.isBefore(cutoff)) {
+            Sale expired = recentSales.poll();
+            Standing current = standings.get(expired.sellerKey);
+            replace(current, new Standing(current.sellerID, current.fulfilledCount, current.revenue,
+                    current.recentCount - 1));
+        }
+    }
+
+    private void replace(Standing current, Standing updated) {
+        standings.put(updated.sellerID, updated);
+        for (NavigableSet<Standing> ranking : rankings.values()) {
+            if (current != null) {
+                ranking.remove(current);
+            }
+            ranking.add(updated);
+        }
+    }
+
+    /**
+     * A fulfilled sale still inside the recent window.
+     */
+    private static class Sale {
+        private final String sellerKey;
+        private final LocalDateTime time;
+
+        Sale(String sellerKey, LocalDateTime time) {
+            this.sellerKey = sellerKey;
+            this.time = time;
+        }
+
+        LocalDateTime getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * An immutable snapshot of one seller's position on the leaderboard.
+     */
+    public static class Standing {
+        private final String sellerID;
+        private final int fulfilledCount;
+        private final double revenue;
+        private final int recentCount;
+
+        /**
+         * Constructs a new Standing.
+         *
+         * @param sellerID       The lowercase ID of the seller.
+         * @param fulfilledCount The number of fulfilled transactions.
+         * @param revenue        The total value of fulfilled transactions.
+         * @param recentCount    The number of fulfilled transactions inside the recent window.
+         */
+        public Standing(String sellerID, int fulfilledCount, double revenue, int recentCount) {
+            this.sellerID = sellerID;
+            this.fulfilledCount = fulfilledCount;
+            this.revenue = revenue;
+            this.recentCount = recentCount;
+        }
+
+        public String getSellerID() {
+            return sellerID;
+        }
+
+        public int getFulfilledCount() {
+            return fulfilledCount;
+        }
+
+        public double getRevenue() {
+            return revenue;
+        }
+
+        public int getRecentCount() {
+            return recentCount;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package SOMSServerJava;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * SellerStats holds aggregate figures for a seller's purchases over a date range: order
+ * counts by status, fulfilment rate, average order size, and fulfilled revenue per item
+ * and per day.
+ * <p>
+ * It is computed with a fork/join task that splits the purchases into ranges, aggregates
+ * each range into a partial result and merges the partials.
+ */
+public class SellerStats {
+    private static final int SPLIT_THRESHOLD = 4096;
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private final StatsRange range;
+    private final int pendingCount;
+    private final int fulfilledCount;
+    private final int unfulfilledCount;
+    private final long fulfilledQuantity;
+    private final long revenueCents;
+    private final Map<String, ItemTotals> byItem;
+    private final SortedMap<LocalDate, ItemTotals> byDay;
+
+    private SellerStats(StatsRange range, Partial totals) {
+        this.range = range;
+        this.pendingCount = totals.pending;
+        this.fulfilledCount = totals.fulfilled;
+        this.unfulfilledCount = totals.unfulfilled;
+        this.fulfilledQuantity = totals.quantity;
+        this.revenueCents = totals.revenueCents;
+
+        // Best-selling items first
+        Map<String, ItemTotals> items = new LinkedHashMap<>();
+        totals.byItem.entrySet().stream()
+                .sorted(Map.Entry.<String, ItemTotals>comparingByValue(
+                        Comparator.comparingLong(ItemTotals::getRevenueCents).reversed())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> items.put(entry.getKey(), entry.getValue()));
+        this.byItem = Collections.unmodifiableMap(items);
+
+        SortedMap<LocalDate, ItemTotals> days = new TreeMap<>();
+        for (Map.Entry<Long, ItemTotals> entry : totals.byDay.entrySet()) {
+            days.put(LocalDate.ofEpochDay(entry.getKey()), entry.getValue());
+        }
+        this.byDay = Collections.unmodifiableSortedMap(days);
+    }
+
+    /**
+     * Computes the statistics for a seller's purchases.
+     *
+     * @param range     The range the purchases were selected with.
+     * @param purchases The seller's purchases within the range.
+     * @return The aggregated statistics.
+     */
+    public static SellerStats compute(StatsRange range, Collection<Purchase> purchases) {
+        Purchase[] rows = purchases.toArray(new Purchase[0]);
+        Partial totals = ForkJoinPool.commonPool().invoke(new AggregateTask(rows, 0, rows.length));
+        return new SellerStats(range, totals);
+    }
+
+    public StatsRange getRange() {
+        return range;
+    }
+
+    public int getOrderCount() {
+        return pendingCount + fulfilledCount + unfulfilledCount;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public int getFulfilledCount() {
+        return fulfilledCount;
+    }
+
+    public int getUnfulfilledCount() {
+        return unfulfilledCount;
+    }
+
+    /**
+     * Gets the share of completed orders that were fulfilled.
+     *
+     * @return The fulfilment rate between 0 and 1, or NaN if no order has been completed.
+     */
+    public double getFulfilmentRate() {
+        int completed = fulfilledCount + unfulfilledCount;
+        return completed == 0 ? Double.NaN : (double) fulfilledCount / completed;
+    }
+
+    /**
+     * Gets the fulfilled revenue in cents.
+     *
+     * @return The total cost of all fulfilled orders, in cents.
+     */
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+
+    /**
+     * Gets the average value of a fulfilled order.
+     *
+     * @return The average in dollars, or 0 if nothing was fulfilled.
+     */
+    public double getAverageOrderValue() {
+        return fulfilledCount == 0 ? 0 : revenueCents / 100.0 / fulfilledCount;
+    }
+
+    /**
+     * Gets the average quantity of a fulfilled order.
+     *
+     * @return The average number of units, or 0 if nothing was fulfilled.
+     */
+    public double getAverageOrderQuantity() {
+        return fulfilledCount == 0 ? 0 : (double) fulfilledQuantity / fulfilledCount;
+    }
+
+    /**
+     * Gets fulfilled totals per item, highest revenue first.
+     *
+     * @return Item name to totals.
+     */
+    public Map<String, ItemTotals> getRevenueByItem() {
+        return byItem;
+    }
+
+    /**
+     * Gets fulfilled totals per purchase day, oldest first.
+     *
+     * @return Day to totals.
+     */
+    public SortedMap<LocalDate, ItemTotals> getRevenueByDay() {
+        return byDay;
+    }
+
+    /**
+     * Fulfilled order count, quantity and revenue for one item or day.
+     */
+    public static final class ItemTotals {
+        private int orders;
+        private long quantity;
+        private long revenueCents;
+
+        public int getOrders() {
+            return orders;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+
+        private void add(Purchase purchase) {
+            orders++;
+            quantity += purchase.getQuantity();
+            revenueCents += purchase.getTotalCostCents();
+        }
+
+        private ItemTotals merge(ItemTotals other) {
+            orders += other.orders;
+            quantity += other.quantity;
+            revenueCents += other.revenueCents;
+            return this;
+        }
+    }
+
+    /**
+     * The totals of one slice of purchases.
+     */
+    private static final class Partial {
+        int pending;
+        int fulfilled;
+        int unfulfilled;
+        long quantity;
+        long revenueCents;
+        final Map<String, ItemTotals> byItem = new HashMap<>();
+        final Map<Long, ItemTotals> byDay = new HashMap<>();
+
+        void add(Purchase purchase) {
+            byte status = purchase.getStatusCode();
+            if (status == Purchase.PENDING) {
+                pending++;
+            } else if (status == Purchase.UNFULFILLED) {
+                unfulfilled++;
+            } else if (status == Purchase.FULFILLED) {
+                fulfilled++;
+                quantity += purchase.getQuantity();
+                revenueCents += purchase.getTotalCostCents();
+                String itemName = purchase.getItemName();
+                String itemKey = itemName == null ? "(unknown)" : itemName.toLowerCase();
+                byItem.computeIfAbsent(itemKey, k -> new ItemTotals()).add(purchase);
+                if (purchase.getPurchaseDate() != null) {
+                    long day = Math.floorDiv(purchase.getPurchaseTime(), NANOS_PER_DAY);
+                    byDay.computeIfAbsent(day, k -> new ItemTotals()).add(purchase);
+                }
+            }
+        }
+
+        Partial merge(Partial other) {
+            pending += other.pending;
+            fulfilled += other.fulfilled;
+            unfulfilled += other.unfulfilled;
+            quantity += other.quantity;
+            revenueCents += other.revenueCents;
+            other.byItem.forEach((item, totals) -> byItem.merge(item, totals, ItemTotals::merge));
+            other.byDay.forEach((day, totals) -> byDay.merge(day, totals, ItemTotals::merge));
+            return this;
+        }
+    }
+
+    /**
+     * Aggregates a range of purchases, splitting it in half until it is small enough.
+     */
+    private static final class AggregateTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final Purchase[] rows;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Purchase[] rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                Partial partial = new Partial();
+                for (int i = from; i < to; i++) {
+                    partial.add(rows[i]);
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(rows, from, middle);
+            left.fork();
+            Partial right = new AggregateTask(rows, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
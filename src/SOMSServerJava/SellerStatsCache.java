@@ -0,0 +1,103 @@
+package SOMSServerJava;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SellerStatsCache keeps computed {@link SellerStats} per seller and range, and reuses them
+ * until the seller's purchases change. Changes are detected through
+ * {@link SellerIndex#getVersion(String)}, so no invalidation events are needed. The least
+ * recently used results are dropped once the cache is full.
+ */
+public class SellerStatsCache {
+    private static final int MAX_ENTRIES = 256;
+
+    private final SellerIndex sellerIndex;
+    // Guarded by itself
+    private final Map<String, CachedStats> cache = new LinkedHashMap<String, CachedStats>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedStats> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a new SellerStatsCache.
+     *
+     * @param sellerIndex The index the statistics are computed from.
+     */
+    public SellerStatsCache(SellerIndex sellerIndex) {
+        this.sellerIndex = sellerIndex;
+    }
+
+    /**
+     * Returns the seller's statistics for a range, computing them if they are missing or stale.
+     *
+     * @param sellerID The ID of the seller.
+     * @param range    The date range.
+     * @return The statistics.
+     */
+    public SellerStats get(String sellerID, StatsRange range) {
+        // Read the version before the data, so a concurrent change leaves the entry stale, not wrong
+        long version = sellerIndex.getVersion(sellerID);
+        String key = sellerID.toLowerCase() + "|" + range.key();
+        CachedStats cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.version == version) {
+            hitCount.incrementAndGet();
+            return cached.stats;
+        }
+
+        missCount.incrementAndGet();
+        SellerStats stats = SellerStats.compute(range, range.select(sellerIndex.getPurchases(sellerID)));
+        synchronized (cache) {
+            cache.put(key, new CachedStats(version, stats));
+        }
+        return stats;
+    }
+
+    /**
+     * Drops every cached result; they are recomputed on their next use.
+     *
+     * @return The number of results dropped.
+     */
+    public int clear() {
+        synchronized (cache) {
+            int size = cache.size();
+            cache.clear();
+            return size;
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Statistics together with the seller version they were computed at.
+     */
+    private static final class CachedStats {
+        final long version;
+        final SellerStats stats;
+
+        CachedStats(long version, SellerStats stats) {
+            this.version = version;
+            this.stats = stats;
+        }
+    }
+}
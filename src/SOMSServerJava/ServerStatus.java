@@ -0,0 +1,160 @@
+package SOMSServerJava;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+/**
+ * ServerStatus reads the live state of the server for JMX clients. Every attribute is computed
+ * when it is read: counts and sums come from the maps and running totals the server already
+ * keeps, so nothing is tracked only for monitoring except the session count.
+ */
+public class ServerStatus implements ServerStatusMXBean {
+    private static final Logger logger = Logger.getLogger(ServerStatus.class.getName());
+    public static final String OBJECT_NAME = "SOMSServerJava:type=ServerStatus";
+
+    private final SOMSContext context;
+    private final Metrics metrics = Metrics.get();
+
+    /**
+     * Constructs a new ServerStatus.
+     *
+     * @param context The shared server state.
+     */
+    public ServerStatus(SOMSContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return context.getActiveSessions().get();
+    }
+
+    @Override
+    public int getThreadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    @Override
+    public int getUserCount() {
+        return context.getUsers().size();
+    }
+
+    @Override
+    public int getItemCount() {
+        return context.getItems().size();
+    }
+
+    @Override
+    public int getBuyerCount() {
+        return context.getPurchases().size();
+    }
+
+    @Override
+    public long getPurchaseCount() {
+        return context.getPurchaseAggregates().getOverallTotals().getOrders();
+    }
+
+    @Override
+    public long getPendingPurchaseCount() {
+        return context.getPurchaseAggregates().getOverallTotals().getPendingCount();
+    }
+
+    @Override
+    public double getPendingPurchaseValue() {
+        return context.getPurchaseAggregates().getOverallTotals().getPendingCents() / 100.0;
+    }
+
+    @Override
+    public long getTotalStock() {
+        long total = 0;
+        for (Item item : context.getItems().values()) {
+            total += item.getQuantityAvailable();
+        }
+        return total;
+    }
+
+    @Override
+    public int getOutOfStockItemCount() {
+        int count = 0;
+        for (Item item : context.getItems().values()) {
+            if (item.getQuantityAvailable() <= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double getLastSaveMillis() {
+        return metrics.getLastPersistenceNanos() / 1_000_000.0;
+    }
+
+    @Override
+    public double getAverageSaveMillis() {
+        return metrics.getPersistenceSnapshot().getMeanNanos() / 1_000_000.0;
+    }
+
+    @Override
+    public long getSaveCount() {
+        return metrics.getPersistenceSnapshot().getCount();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return context.getCatalogCache().getVersion();
+    }
+
+    @Override
+    public long getCatalogCacheHits() {
+        return context.getCatalogCache().getHitCount();
+    }
+
+    @Override
+    public long getCatalogCacheRebuilds() {
+        return context.getCatalogCache().getRebuildCount();
+    }
+
+    @Override
+    public long getSellerStatsCacheHits() {
+        return context.getSellerStatsCache().getHitCount();
+    }
+
+    @Override
+    public long getSellerStatsCacheMisses() {
+        return context.getSellerStatsCache().getMissCount();
+    }
+
+    @Override
+    public int getSellerStatsCacheSize() {
+        return context.getSellerStatsCache().size();
+    }
+
+    @Override
+    public String flush() {
+        // A batch of credits saves the data itself
+        int settled = context.getSettlementLedger().settle();
+        if (settled == 0) {
+            SOMSUtils.saveAllData(context.getUsers(), context.getAccounts(), context.getItems(), context.getPurchases());
+        }
+        logger.info("Flush requested over JMX; settled " + settled + " credits and saved the data.");
+        return "Settled " + settled + " credits and saved the data files.";
+    }
+
+    @Override
+    public String dumpCaches() {
+        CatalogCache catalogCache = context.getCatalogCache();
+        SellerStatsCache sellerStatsCache = context.getSellerStatsCache();
+        String counters = "Catalog cache: " + catalogCache.getHitCount() + " hits, " + catalogCache.getRebuildCount()
+                + " rebuilds. Seller stats cache: " + sellerStatsCache.getHitCount() + " hits, "
+                + sellerStatsCache.getMissCount() + " misses.";
+        catalogCache.invalidate();
+        int dropped = sellerStatsCache.clear();
+        logger.info("Caches dropped over JMX. " + counters);
+        return counters + " Dropped the rendered catalog and " + dropped + " seller statistics.";
+    }
+
+    @Override
+    public String dumpMetrics() {
+        return metrics.dump();
+    }
+}
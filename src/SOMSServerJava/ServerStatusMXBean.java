@@ -0,0 +1,85 @@
+package SOMSServerJava;
+
+/**
+ * ServerStatusMXBean is the management interface of a running SOMS server, registered as
+ * {@value ServerStatus#OBJECT_NAME} so that it can be watched with JConsole, VisualVM or any
+ * other JMX client. Amounts are in dollars and times in milliseconds.
+ */
+public interface ServerStatusMXBean {
+
+    /**
+     * @return The number of client connections currently being served.
+     */
+    int getActiveSessions();
+
+    /**
+     * @return The number of live threads in the server, sessions included.
+     */
+    int getThreadCount();
+
+    int getUserCount();
+
+    int getItemCount();
+
+    /**
+     * @return The number of buyers with at least one purchase.
+     */
+    int getBuyerCount();
+
+    long getPurchaseCount();
+
+    long getPendingPurchaseCount();
+
+    /**
+     * @return The funds reserved by pending purchases.
+     */
+    double getPendingPurchaseValue();
+
+    /**
+     * @return The units in stock over all items.
+     */
+    long getTotalStock();
+
+    int getOutOfStockItemCount();
+
+    /**
+     * @return How long the most recent save of the data files took.
+     */
+    double getLastSaveMillis();
+
+    double getAverageSaveMillis();
+
+    long getSaveCount();
+
+    long getCatalogVersion();
+
+    long getCatalogCacheHits();
+
+    long getCatalogCacheRebuilds();
+
+    long getSellerStatsCacheHits();
+
+    long getSellerStatsCacheMisses();
+
+    int getSellerStatsCacheSize();
+
+    /**
+     * Settles outstanding seller credits and saves the data files.
+     *
+     * @return A description of what was done.
+     */
+    String flush();
+
+    /**
+     * Drops the rendered catalog and the cached seller statistics; they are rebuilt on their
+     * next use.
+     *
+     * @return The cache counters from before the caches were dropped.
+     */
+    String dumpCaches();
+
+    /**
+     * @return The text of the seller 'view metrics' command.
+     */
+    String dumpMetrics();
+}
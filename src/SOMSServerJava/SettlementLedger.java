@@ -0,0 +1,422 @@
+package SOMSServerJava;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SettlementLedger records the money moved when a seller delivers a purchase: the amount
+ * reserved from the buyer is credited to the seller. Completions only append an entry, without
+ * touching the seller's Account, so a seller with many sessions no longer serializes every
+ * completion on their account's lock.
+ * <p>
+ * Each entry is in the ledger file before {@link #credit} returns, so before the delivery is
+ * saved. Once started, the settler thread owns the file: sessions hand it their entries and it
+ * writes everything queued in one append (a group commit) between batches.
+ * <p>
+ * Entries are settled in batches: each batch appends its entries under a new batch number, adds
+ * one sum per seller account and saves the data once. The account saves the number of the last
+ * batch in its balance, so {@link #recover()} can tell at startup which batches reached
+ * accounts.json: an entry is settled again only if its account has not saved its batch. An
+ * entry is only settled once its purchase is fulfilled, and one whose purchase was not saved
+ * as fulfilled is closed with the batch {@code void} at recovery, since the purchase can still
+ * be delivered or refunded. Until {@link #start(Duration)} is called every credit is settled as
+ * soon as it is recorded.
+ * <p>
+ * The ledger file is append-only CSV:
+ * {@code batch,settledAt,entry,recordedAt,purchaseKey,buyerID,debitAccount,sellerID,creditAccount,amount},
+ * where the purchase key and buyer ID are the keys the purchase is filed under (the key is
+ * normally the purchase ID) and the debit account is the buyer's, from which the amount was
+ * reserved. The batch and settledAt fields are empty on the line written when the entry is
+ * recorded.
+ */
+public class SettlementLedger {
+    private static final Logger logger = Logger.getLogger(SettlementLedger.class.getName());
+    public static final String LEDGER_FILE = "ledger.csv";
+    // Batch field of an entry dropped at recovery
+    private static final String VOIDED = "void";
+
+    private final Map<String, User> users;
+    private final Map<Integer, Account> accounts;
+    private final Map<String, Item> items;
+    private final Map<String, Map<Integer, Purchase>> purchases;
+    // Entries waiting to be written to the ledger file
+    private final BlockingQueue<Entry> journal = new LinkedBlockingQueue<>();
+    // Entries in the ledger file and not yet settled
+    private final Queue<Entry> unsettled = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, LongAdder> unsettledCents = new ConcurrentHashMap<>();
+    private final AtomicLong entrySequence = new AtomicLong();
+    // Held while writing the file; only contended when credits are settled without the thread
+    private final Object ledgerFile = new Object();
+    // Guarded by this
+    private long batchSequence;
+    private volatile Thread settler;
+
+    /**
+     * Constructs a new SettlementLedger.
+     *
+     * @param users     Map of userID to User objects.
+     * @param accounts  Map of accountNumber to Account objects.
+     * @param items     Map of itemName to Item objects.
+     * @param purchases Map of userID to their purchases.
+     */
+    public SettlementLedger(Map<String, User> users, Map<Integer, Account> accounts,
+                            Map<String, Item> items, Map<String, Map<Integer, Purchase>> purchases) {
+        this.users = users;
+        this.accounts = accounts;
+        this.items = items;
+        this.purchases = purchases;
+    }
+
+    /**
+     * Starts writing entries and settling batches on a background thread.
+     *
+     * @param interval The time between batches.
+     */
+    public synchronized void start(Duration interval) {
+        if (settler != null) {
+            return;
+        }
+        long intervalMillis = Math.max(1, interval.toMillis());
+        Thread thread = new Thread(() -> {
+            long nextBatch = System.currentTimeMillis() + intervalMillis;
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    long wait = nextBatch - System.currentTimeMillis();
+                    if (wait > 0) {
+                        writeJournal(journal.poll(wait, TimeUnit.MILLISECONDS));
+                        continue;
+                    }
+                    nextBatch = System.currentTimeMillis() + intervalMillis;
+                    settle();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Settlement batch failed: ", e);
+                }
+            }
+        }, "settlement-ledger");
+        thread.setDaemon(true);
+        settler = thread;
+        thread.start();
+        logger.info("Settlement ledger started; settling every " + intervalMillis + " ms.");
+    }
+
+    /**
+     * Stops the background thread, writes the entries it had not written yet and settles
+     * whatever is outstanding.
+     */
+    public void shutdown() {
+        Thread thread = settler;
+        settler = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeJournal(null);
+        settle();
+    }
+
+    /**
+     * Settles the entries that the ledger file shows as recorded but whose batch did not reach
+     * the seller's saved account, and continues the entry and batch numbering of the file.
+     * Called once at startup, before any credit.
+     *
+     * @return The number of entries recovered.
+     */
+    public synchronized int recover() {
+        Map<Long, Entry> recorded = new LinkedHashMap<>();
+        Map<Long, Long> batchOf = new HashMap<>();
+        long lastEntry = 0;
+        long lastBatch = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(LEDGER_FILE))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",", -1);
+                try {
+                    if (fields.length != 10) {
+                        throw new IllegalArgumentException("Expected 10 fields.");
+                    }
+                    long sequence = Long.parseLong(fields[2]);
+                    lastEntry = Math.max(lastEntry, sequence);
+                    if (fields[0].isEmpty()) {
+                        recorded.put(sequence, new Entry(sequence, LocalDateTime.parse(fields[3]),
+                                Integer.parseInt(fields[4]), fields[5], Integer.parseInt(fields[6]), fields[7],
+                                Integer.parseInt(fields[8]), Math.round(Double.parseDouble(fields[9]) * 100), null));
+                    } else if (fields[0].equals(VOIDED)) {
+                        recorded.remove(sequence);
+                    } else {
+                        long batch = Long.parseLong(fields[0]);
+                        lastBatch = Math.max(lastBatch, batch);
+                        batchOf.merge(sequence, batch, Math::max);
+                    }
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    // A line cut short by a crash while it was being written
+                    logger.warning("Skipping unreadable line in " + LEDGER_FILE + ": " + line);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return 0;
+        } catch (IOException e) {
+            logger.severe("Error reading " + LEDGER_FILE + ": " + e.getMessage());
+        }
+        for (Account account : accounts.values()) {
+            lastBatch = Math.max(lastBatch, account.getSettledBatch());
+        }
+        entrySequence.set(lastEntry);
+        batchSequence = lastBatch;
+
+        StringBuilder voided = new StringBuilder();
+        String voidedAt = LocalDateTime.now().toString();
+        int recovered = 0;
+        for (Entry entry : recorded.values()) {
+            Long batch = batchOf.get(entry.sequence);
+            Account account = accounts.get(entry.creditAccount);
+            if (batch != null && (account == null || account.getSettledBatch() >= batch)) {
+                continue;
+            }
+            Map<Integer, Purchase> buyerPurchases = purchases.get(entry.buyerID);
+            Purchase purchase = buyerPurchases == null ? null : IntHashMap.lookup(buyerPurchases, entry.purchaseKey);
+            if (purchase == null || purchase.getStatusCode() != Purchase.FULFILLED) {
+                // The server stopped before the delivery was saved, so the purchase can still be completed
+                logger.warning("Voiding the credit for purchase " + entry.purchaseKey + " of " + entry.buyerID
+                        + "; it was not saved as fulfilled.");
+                appendLine(voided, VOIDED, voidedAt, entry);
+                continue;
+            }
+            queue(new Entry(entry, purchase));
+            recovered++;
+        }
+        if (voided.length() > 0) {
+            write(voided.toString());
+        }
+        if (recovered > 0) {
+            logger.warning("Recovered " + recovered + " credits not settled before the last shutdown.");
+            settle();
+        }
+        return recovered;
+    }
+
+    /**
+     * Records a credit to a seller for a delivered purchase and marks the purchase fulfilled.
+     * The status is only changed once the entry is in the ledger file, so a saved fulfilled
+     * purchase always has its credit recorded; the caller must hold the purchase's lock.
+     *
+     * @param purchase    The delivered purchase.
+     * @param buyerID     The ID of the buyer the purchase is filed under.
+     * @param purchaseKey The key the purchase is filed under in the buyer's purchases.
+     * @param seller      The seller to credit.
+     */
+    public void credit(Purchase purchase, String buyerID, int purchaseKey, User seller) {
+        User buyer = buyerID == null ? null : users.get(buyerID);
+        Entry entry = new Entry(entrySequence.incrementAndGet(), LocalDateTime.now(), purchaseKey,
+                buyerID, buyer == null ? 0 : buyer.getAccountNumber(), seller.getUserID(),
+                seller.getAccountNumber(), purchase.getTotalCostCents(), purchase);
+        journal.add(entry);
+        if (settler == null) {
+            writeJournal(null);
+        }
+        // Written by the settler thread together with every other entry queued meanwhile
+        entry.written.join();
+        purchase.setStatus("fulfilled");
+        if (settler == null) {
+            settle();
+        }
+    }
+
+    /**
+     * Reads an account's settled balance together with its credits not yet settled. Both are
+     * read while no batch is being settled, so a batch is neither missed nor counted twice.
+     *
+     * @param account The account.
+     * @return The account's balance.
+     */
+    public synchronized Balance getBalance(Account account) {
+        LongAdder pending = unsettledCents.get(account.getAccountNumber());
+        return new Balance(account.getBalance(), pending == null ? 0 : pending.sum());
+    }
+
+    /**
+     * Settles the recorded credits whose purchases are fulfilled: one append to the ledger
+     * file, one addition per account and one save of the data.
+     *
+     * @return The number of entries settled.
+     */
+    public synchronized int settle() {
+        List<Entry> batch = new ArrayList<>();
+        List<Entry> waiting = new ArrayList<>();
+        Entry entry;
+        while ((entry = unsettled.poll()) != null) {
+            // credit() sets the status just after writing the entry; settling before that could
+            // save the balance while the purchase is still saved as pending
+            if (entry.purchase.getStatusCode() == Purchase.FULFILLED) {
+                batch.add(entry);
+            } else {
+                waiting.add(entry);
+            }
+        }
+        unsettled.addAll(waiting);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // The batch is in the file before any balance that includes it is saved
+        long batchId = ++batchSequence;
+        String settledAt = LocalDateTime.now().toString();
+        StringBuilder sb = new StringBuilder();
+        for (Entry settled : batch) {
+            appendLine(sb, String.valueOf(batchId), settledAt, settled);
+        }
+        write(sb.toString());
+
+        Map<Integer, Long> totals = new HashMap<>();
+        for (Entry settled : batch) {
+            totals.merge(settled.creditAccount, settled.amountCents, Long::sum);
+        }
+        for (Map.Entry<Integer, Long> total : totals.entrySet()) {
+            Account account = accounts.get(total.getKey());
+            if (account == null) {
+                logger.severe("Account " + total.getKey() + " not found; $" + String.format("%.2f", total.getValue() / 100.0)
+                        + " stays recorded in the ledger only.");
+            } else {
+                account.settleBatch(batchId, total.getValue() / 100.0);
+            }
+            unsettledCents.get(total.getKey()).add(-total.getValue());
+        }
+        SOMSUtils.saveAllData(users, accounts, items, purchases);
+        logger.info("Settled batch " + batchId + ": " + batch.size() + " credits to " + totals.size() + " accounts.");
+        return batch.size();
+    }
+
+    /**
+     * Writes every entry waiting in the journal with one append, then queues them for
+     * settlement and releases the sessions waiting on them.
+     *
+     * @param first An entry already taken from the journal, or null.
+     */
+    private void writeJournal(Entry first) {
+        List<Entry> written = new ArrayList<>();
+        if (first != null) {
+            written.add(first);
+        }
+        journal.drainTo(written);
+        if (written.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : written) {
+            appendLine(sb, "", "", entry);
+        }
+        write(sb.toString());
+        for (Entry entry : written) {
+            queue(entry);
+            entry.written.complete(null);
+        }
+    }
+
+    private void queue(Entry entry) {
+        unsettledCents.computeIfAbsent(entry.creditAccount, k -> new LongAdder()).add(entry.amountCents);
+        unsettled.add(entry);
+    }
+
+    private static void appendLine(StringBuilder sb, String batch, String settledAt, Entry entry) {
+        sb.append(batch).append(',').append(settledAt).append(',')
+                .append(entry.sequence).append(',').append(entry.recordedAt).append(',')
+                .append(entry.purchaseKey).append(',').append(entry.buyerID).append(',')
+                .append(entry.debitAccount).append(',').append(entry.sellerID).append(',')
+                .append(entry.creditAccount).append(',')
+                .append(String.format("%.2f", entry.amountCents / 100.0)).append('\n');
+    }
+
+    private void write(String lines) {
+        synchronized (ledgerFile) {
+            try (Writer writer = new FileWriter(LEDGER_FILE, true)) {
+                writer.write(lines);
+            } catch (IOException e) {
+                logger.severe("Error appending to " + LEDGER_FILE + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * An account's settled balance and the credits to it not yet settled.
+     */
+    public static final class Balance {
+        private final double settled;
+        private final long unsettledCents;
+
+        private Balance(double settled, long unsettledCents) {
+            this.settled = settled;
+            this.unsettledCents = unsettledCents;
+        }
+
+        public double getSettled() {
+            return settled;
+        }
+
+        public long getUnsettledCents() {
+            return unsettledCents;
+        }
+    }
+
+    /**
+     * One credit: the amount reserved from the buyer's account, paid to the seller's.
+     */
+    private static final class Entry {
+        final long sequence;
+        final LocalDateTime recordedAt;
+        final int purchaseKey;
+        final String buyerID;
+        final int debitAccount;
+        final String sellerID;
+        final int creditAccount;
+        final long amountCents;
+        // The delivered purchase; null only while an entry is read back from the file
+        final Purchase purchase;
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Entry(long sequence, LocalDateTime recordedAt, int purchaseKey, String buyerID, int debitAccount,
+              String sellerID, int creditAccount, long amountCents, Purchase purchase) {
+            this.sequence = sequence;
+            this.recordedAt = recordedAt;
+            this.purchaseKey = purchaseKey;
+            this.buyerID = buyerID;
+            this.debitAccount = debitAccount;
+            this.sellerID = sellerID;
+            this.creditAccount = creditAccount;
+            this.amountCents = amountCents;
+            this.purchase = purchase;
+        }
+
+        Entry(Entry recovered, Purchase purchase) {
+            this(recovered.sequence, recovered.recordedAt, recovered.purchaseKey, recovered.buyerID,
+                    recovered.debitAccount, recovered.sellerID, recovered.creditAccount, recovered.amountCents, purchase);
+        }
+    }
+}
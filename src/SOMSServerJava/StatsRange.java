@@ -0,0 +1,124 @@
+package SOMSServerJava;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.NavigableSet;
+
+/**
+ * StatsRange is the date range a seller's statistics are computed over.
+ * <p>
+ * Syntax: {@code [days <n>] [from <yyyy-MM-dd>] [to <yyyy-MM-dd>]}. With no options the range
+ * is all time. 'days n' covers today and the n - 1 days before it; it is resolved to fixed dates
+ * when parsed, so cached results for it expire at midnight.
+ */
+public class StatsRange {
+    public static final String USAGE_OPTIONS = "[days <n>] [from <yyyy-MM-dd>] [to <yyyy-MM-dd>]";
+    public static final int MAX_DAYS = 3660;
+
+    private LocalDate from;
+    private LocalDate to;
+
+    /**
+     * Parses the options that follow 'view stats'.
+     *
+     * @param args  The option text; may be empty.
+     * @param today The current date, used by the 'days' option.
+     * @return The parsed range.
+     * @throws IllegalArgumentException if the options are malformed.
+     */
+    public static StatsRange parse(String args, LocalDate today) {
+        StatsRange range = new StatsRange();
+        String trimmed = args == null ? "" : args.trim();
+        if (trimmed.isEmpty()) {
+            return range;
+        }
+
+        String[] tokens = trimmed.split("\\s+");
+        if (tokens.length % 2 != 0) {
+            throw new IllegalArgumentException("Each option needs a value: " + USAGE_OPTIONS);
+        }
+        for (int i = 0; i < tokens.length; i += 2) {
+            String option = tokens[i].toLowerCase();
+            String value = tokens[i + 1];
+            switch (option) {
+                case "days":
+                    int days;
+                    try {
+                        days = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        days = -1;
+                    }
+                    if (days <= 0 || days > MAX_DAYS) {
+                        throw new IllegalArgumentException("Days must be between 1 and " + MAX_DAYS + ".");
+                    }
+                    range.from = today.minusDays(days - 1);
+                    range.to = today;
+                    break;
+                case "from":
+                    range.from = parseDate(value);
+                    break;
+                case "to":
+                    range.to = parseDate(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option '" + tokens[i] + "'. Options: " + USAGE_OPTIONS);
+            }
+        }
+        if (range.from != null && range.to != null && range.from.isAfter(range.to)) {
+            throw new IllegalArgumentException("The 'from' date must not be after the 'to' date.");
+        }
+        return range;
+    }
+
+    /**
+     * Selects the purchases that fall within the range.
+     *
+     * @param purchases Purchases ordered by {@link Purchase#BY_DATE}.
+     * @return A view of the purchases in the range.
+     */
+    public NavigableSet<Purchase> select(NavigableSet<Purchase> purchases) {
+        NavigableSet<Purchase> window = purchases;
+        if (from != null) {
+            window = window.tailSet(Purchase.probeAt(from.atStartOfDay()), true);
+        }
+        if (to != null) {
+            window = window.headSet(Purchase.probeAt(to.plusDays(1).atStartOfDay()), false);
+        }
+        return window;
+    }
+
+    /**
+     * Gets a key that identifies the range, for caching.
+     *
+     * @return The resolved range as text.
+     */
+    public String key() {
+        return (from == null ? "" : from.toString()) + ".." + (to == null ? "" : to.toString());
+    }
+
+    /**
+     * Describes the range for display.
+     *
+     * @return A heading such as "all time" or "2024-11-01 to 2024-11-30".
+     */
+    public String describe() {
+        if (from == null && to == null) {
+            return "all time";
+        }
+        if (to == null) {
+            return "since " + from;
+        }
+        if (from == null) {
+            return "up to " + to;
+        }
+        return from + " to " + to;
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + value + "'. Use yyyy-MM-dd.");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package SOMSServerJava;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StringDictionary assigns each distinct string a small int code, so that records holding
+ * many repeated IDs and names can store an int instead of their own String copy.
+ * Codes are never reused or removed. Encoding a known string and decoding are lock-free.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size; // Guarded by this
+
+    /**
+     * Returns the code for a string, assigning a new one the first time it is seen.
+     *
+     * @param value The string to encode; may be null.
+     * @return The string's code, or -1 for null.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        return add(value);
+    }
+
+    /**
+     * Returns the string for a code.
+     *
+     * @param code A code returned by {@link #encode(String)}, or -1.
+     * @return The string, or null for -1.
+     */
+    public String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        // Republish the array so readers that learn the new code also see its entry
+        values = current;
+        codes.put(value, size);
+        return size++;
+    }
+}